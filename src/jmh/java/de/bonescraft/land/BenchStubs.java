@@ -0,0 +1,85 @@
+package de.bonescraft.land;
+
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Lightweight stand-ins for server objects so the benchmarks run headless. Only the methods the
+ * measured code calls are implemented; anything else throws.
+ */
+final class BenchStubs {
+    private BenchStubs() {}
+
+    static World world(String name) {
+        return (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class<?>[]{World.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getName" -> name;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "World[" + name + "]";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    static Block block(World world, int x, int y, int z) {
+        return (Block) Proxy.newProxyInstance(Block.class.getClassLoader(), new Class<?>[]{Block.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getX" -> x;
+                    case "getY" -> y;
+                    case "getZ" -> z;
+                    case "getWorld" -> world;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "Block[" + x + "," + y + "," + z + "]";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    /** Claim manager backed by a storage that keeps nothing. */
+    static ClaimManager claimManager() {
+        return new ClaimManager(null, snapshot -> new NoStorage());
+    }
+
+    /**
+     * Claims {@code claims} chunks as 3x3 squares, one owner per square, with one free chunk
+     * between neighbouring squares. Every claim gets two trusted members.
+     *
+     * @return the owners, in claim order
+     */
+    static UUID[] fill(ClaimManager manager, String world, int claims) {
+        int squares = Math.max(1, claims / 9);
+        int perRow = (int) Math.ceil(Math.sqrt(squares));
+        UUID[] owners = new UUID[squares];
+        List<ClaimManager.Claim> batch = new ArrayList<>(squares);
+        for (int i = 0; i < squares; i++) {
+            UUID owner = new UUID(0x5EED, i);
+            owners[i] = owner;
+            int minX = (i % perRow) * 4;
+            int minZ = (i / perRow) * 4;
+            batch.add(new ClaimManager.Claim(0, world, minX, minZ, minX + 2, minZ + 2, owner,
+                    Map.of(new UUID(0xBEEF, i), TrustLevel.BUILD, new UUID(0xCAFE, i), TrustLevel.CONTAINER_VIEW)));
+        }
+        manager.addClaims(batch);
+        return owners;
+    }
+
+    /** Side length in chunks of the area used by {@link #fill}. */
+    static int extent(int claims) {
+        int squares = Math.max(1, claims / 9);
+        return (int) Math.ceil(Math.sqrt(squares)) * 4;
+    }
+
+    private static final class NoStorage implements ClaimStorage {
+        @Override public List<ClaimManager.Claim> load() { return List.of(); }
+        @Override public void changed(List<ClaimManager.Claim> removed, List<ClaimManager.Claim> added) {}
+        @Override public void trusted(ClaimManager.Claim claim, UUID member, TrustLevel level) {}
+        @Override public void untrusted(ClaimManager.Claim claim, UUID member) {}
+        @Override public void close() {}
+    }
+}
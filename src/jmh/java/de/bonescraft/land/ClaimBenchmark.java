@@ -0,0 +1,93 @@
+package de.bonescraft.land;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Claim lookups as done by the protection listener and the commands. Probes are spread over the
+ * claimed area, so roughly half of them hit a claim.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClaimBenchmark {
+    private static final String WORLD = "world";
+    private static final int PROBES = 4096;
+    private static final UUID TRUSTEE = new UUID(0xBEEF, 0);
+
+    @Param({"1000", "10000", "100000"})
+    public int claims;
+
+    private ClaimManager manager;
+    private UUID[] owners;
+    private final int[] probeX = new int[PROBES];
+    private final int[] probeZ = new int[PROBES];
+    private final Location[] probeLocations = new Location[PROBES];
+    private final ClaimManager.Claim[] probeClaims = new ClaimManager.Claim[PROBES];
+    private final UUID[] probePlayers = new UUID[PROBES];
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        manager = BenchStubs.claimManager();
+        owners = BenchStubs.fill(manager, WORLD, claims);
+        World world = BenchStubs.world(WORLD);
+        int extent = BenchStubs.extent(claims);
+        Random random = new Random(42);
+        for (int i = 0; i < PROBES; i++) {
+            probeX[i] = random.nextInt(extent);
+            probeZ[i] = random.nextInt(extent);
+            probeLocations[i] = new Location(world, (probeX[i] << 4) + random.nextInt(16), 64, (probeZ[i] << 4) + random.nextInt(16));
+            ClaimManager.Claim c;
+            do {
+                c = manager.getClaimAt(WORLD, random.nextInt(extent), random.nextInt(extent));
+            } while (c == null);
+            probeClaims[i] = c;
+            // owner, trusted member or stranger
+            int square = (int) c.owner().getLeastSignificantBits();
+            probePlayers[i] = switch (random.nextInt(3)) {
+                case 0 -> c.owner();
+                case 1 -> new UUID(0xCAFE, square);
+                default -> new UUID(0xD00D, i);
+            };
+        }
+    }
+
+    @Benchmark
+    public ClaimManager.Claim getClaimAtChunk() {
+        int i = cursor++ & (PROBES - 1);
+        return manager.getClaimAt(WORLD, probeX[i], probeZ[i]);
+    }
+
+    @Benchmark
+    public ClaimManager.Claim getClaimAtLocation() {
+        return manager.getClaimAt(probeLocations[cursor++ & (PROBES - 1)]);
+    }
+
+    @Benchmark
+    public TrustLevel getTrustLevel() {
+        int i = cursor++ & (PROBES - 1);
+        return manager.getTrustLevel(probePlayers[i], probeClaims[i]);
+    }
+
+    /** Trusts and untrusts a member: two index edits, whose cost should not grow with the claim count. */
+    @Benchmark
+    public boolean trustChange() {
+        ClaimManager.Claim c = probeClaims[cursor++ & (PROBES - 1)];
+        return manager.addMember(c, TRUSTEE, TrustLevel.BUILD) && manager.removeMember(c, TRUSTEE);
+    }
+
+    @Benchmark
+    public List<ClaimManager.Claim> getClaimsOf() {
+        return manager.getClaimsOf(owners[(cursor++ & Integer.MAX_VALUE) % owners.length]);
+    }
+}
@@ -0,0 +1,72 @@
+package de.bonescraft.land;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ContainerOwnerStore#getOwner} with all shards in memory, as for loaded chunks. Half of
+ * the probes hit a tracked container, the rest an empty block in a chunk that has containers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContainerOwnerBenchmark {
+    private static final int PROBES = 4096;
+    private static final int PER_CHUNK = 50;
+
+    @Param({"100000"})
+    public int containers;
+
+    private Path dir;
+    private ContainerOwnerStore store;
+    private final Location[] probes = new Location[PROBES];
+    private int cursor;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("bonescraft-bench");
+        store = new ContainerOwnerStore(null, dir.toFile());
+        World world = BenchStubs.world("world");
+        int chunks = containers / PER_CHUNK;
+        int perRow = (int) Math.ceil(Math.sqrt(chunks));
+        Random random = new Random(42);
+        Location[] placed = new Location[containers];
+        for (int i = 0; i < containers; i++) {
+            int chunk = i / PER_CHUNK;
+            int x = ((chunk % perRow) << 4) + random.nextInt(16);
+            int z = ((chunk / perRow) << 4) + random.nextInt(16);
+            placed[i] = new Location(world, x, -64 + random.nextInt(384), z);
+            store.setOwner(placed[i], new UUID(0x5EED, random.nextInt(1000)));
+        }
+        for (int i = 0; i < PROBES; i++) {
+            Location hit = placed[random.nextInt(containers)];
+            probes[i] = (i & 1) == 0 ? hit : new Location(world, hit.getBlockX(), hit.getBlockY() + 1, hit.getBlockZ());
+        }
+        // Shards are read in the background; measure once every probed chunk has been read
+        for (Location probe : probes) {
+            while (store.getOwner(probe) == ContainerOwnerStore.PENDING) Thread.onSpinWait();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        // The store was never flushed; nothing but the empty directory to remove
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public UUID getOwner() {
+        return store.getOwner(probes[cursor++ & (PROBES - 1)]);
+    }
+}
@@ -0,0 +1,82 @@
+package de.bonescraft.land;
+
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link EnvironmentClaimCheck}: a fluid update inside one chunk (the common case, no claim
+ * lookup), one flowing out of a claim into the wilderness next to it, and a TNT blast (radius 4,
+ * every solid block in range) centred on a claim border. The blast benchmarks include copying the
+ * block list, since the filter removes from it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnvironmentBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int claims;
+
+    private ClaimManager manager;
+    private Block insideFrom, insideTo, borderFrom, borderTo;
+    private List<Block> insideBlast, borderBlast;
+
+    @Setup
+    public void setup() {
+        manager = BenchStubs.claimManager();
+        BenchStubs.fill(manager, "world", claims);
+        World world = BenchStubs.world("world");
+
+        insideFrom = BenchStubs.block(world, 5, 64, 8);
+        insideTo = BenchStubs.block(world, 6, 64, 8);
+        // Last block of the first square (chunks 0..2) and the free chunk 3 next to it
+        borderFrom = BenchStubs.block(world, (3 << 4) - 1, 64, 8);
+        borderTo = BenchStubs.block(world, 3 << 4, 64, 8);
+
+        insideBlast = sphere(world, 8, 8, 4);
+        borderBlast = sphere(world, 3 << 4, 8, 4);
+    }
+
+    private static List<Block> sphere(World world, int cx, int cz, int r) {
+        List<Block> blocks = new ArrayList<>();
+        for (int x = -r; x <= r; x++) {
+            for (int y = -r; y <= r; y++) {
+                for (int z = -r; z <= r; z++) {
+                    if (x * x + y * y + z * z <= r * r) blocks.add(BenchStubs.block(world, cx + x, 64 + y, cz + z));
+                }
+            }
+        }
+        return blocks;
+    }
+
+    @Benchmark
+    public boolean flowInsideChunk() {
+        return EnvironmentClaimCheck.crossesIntoForeignClaim(manager, insideFrom, insideTo);
+    }
+
+    @Benchmark
+    public boolean flowAcrossBorder() {
+        return EnvironmentClaimCheck.crossesIntoForeignClaim(manager, borderFrom, borderTo);
+    }
+
+    @Benchmark
+    public int blastInsideChunk() {
+        List<Block> blocks = new ArrayList<>(insideBlast);
+        EnvironmentClaimCheck.filterExplosion(manager, "world", 8, 8, blocks);
+        return blocks.size();
+    }
+
+    @Benchmark
+    public int blastAcrossBorder() {
+        List<Block> blocks = new ArrayList<>(borderBlast);
+        EnvironmentClaimCheck.filterExplosion(manager, "world", 3 << 4, 8, blocks);
+        return blocks.size();
+    }
+}
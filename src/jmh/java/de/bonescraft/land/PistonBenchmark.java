@@ -0,0 +1,63 @@
+package de.bonescraft.land;
+
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PistonClaimCheck} for a full 12-block push: once inside a single chunk (the common case,
+ * no claim lookup needed) and once out of a claim into the wilderness next to it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PistonBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int claims;
+
+    private ClaimManager manager;
+    private Block insidePiston, insideHead, borderPiston, borderHead;
+    private List<Block> insideMoved, borderMoved;
+
+    @Setup
+    public void setup() {
+        manager = BenchStubs.claimManager();
+        BenchStubs.fill(manager, "world", claims);
+        World world = BenchStubs.world("world");
+
+        // Inside chunk 0,0 pushing east from x=1; all 12 blocks stay in the chunk
+        insidePiston = BenchStubs.block(world, 1, 64, 8);
+        insideHead = BenchStubs.block(world, 2, 64, 8);
+        insideMoved = row(world, 2, 12);
+
+        // From the edge of the first square (chunks 0..2) into the free chunk 3 next to it
+        int start = (3 << 4) - 6;
+        borderPiston = BenchStubs.block(world, start - 1, 64, 8);
+        borderHead = BenchStubs.block(world, start, 64, 8);
+        borderMoved = row(world, start, 12);
+    }
+
+    private static List<Block> row(World world, int fromX, int count) {
+        List<Block> blocks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) blocks.add(BenchStubs.block(world, fromX + i, 64, 8));
+        return blocks;
+    }
+
+    @Benchmark
+    public boolean pushInsideChunk() {
+        return PistonClaimCheck.crossesClaimBorder(manager, insidePiston, insideHead, insideMoved, BlockFace.EAST);
+    }
+
+    @Benchmark
+    public boolean pushAcrossBorder() {
+        return PistonClaimCheck.crossesClaimBorder(manager, borderPiston, borderHead, borderMoved, BlockFace.EAST);
+    }
+}
@@ -0,0 +1,198 @@
+package de.bonescraft.land;
+
+import io.papermc.paper.event.player.AsyncChatEvent;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerCommandPreprocessEvent;
+import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tells the {@link PlaytimeTracker} which online players are idle (AFK).
+ *
+ * Every {@code afk-sample-seconds} one task compares each player's position and rotation with the
+ * previous sample; chat, commands and interactions only set a flag for the next sample. A player
+ * who did none of these for {@code afk-idle-seconds} is reported idle from then on, and active
+ * again as soon as a sample sees activity, so the tracker is only called on transitions. Moving
+ * while riding a vehicle does not count, so minecart loops and boats keep nobody active.
+ *
+ * Per-player state lives in primitive arrays indexed by a slot assigned on join and reused after
+ * quit. A sample reads every position into one reused {@link Location} and allocates nothing; its
+ * cost grows with the number of players, not with how much they move, chat or click, and there
+ * is no move event handler at all. The flags are written without a lock from the chat and region
+ * threads; a flag lost to a race only delays the player's next transition by one sample.
+ */
+final class ActivitySampler implements Listener {
+    /** Squared distance in blocks a player has to move between two samples to count as active. */
+    private static final double MOVE_SQ = 0.01;
+    /** Degrees a player has to turn between two samples to count as active. */
+    private static final float TURN = 0.5f;
+
+    private final BonescraftLand plugin;
+    private final PlaytimeTracker tracker;
+    private final LatencyHistogram latency;
+    private final Map<UUID, Integer> slots = new ConcurrentHashMap<>();
+    private final Location scratch = new Location(null, 0, 0, 0);
+    /** Set by the event handlers, cleared by the sample. */
+    private volatile byte[] input = new byte[64];
+
+    // Per slot; guarded by this
+    private Player[] players = new Player[64];
+    private double[] xs = new double[64];
+    private double[] ys = new double[64];
+    private double[] zs = new double[64];
+    private float[] yaws = new float[64];
+    private float[] pitches = new float[64];
+    private long[] lastActive = new long[64];
+    private boolean[] idle = new boolean[64];
+    /** One past the highest slot in use. */
+    private int high;
+
+    private long idleMs;
+    private long sampleTicks;
+    private ScheduledTask task;
+
+    ActivitySampler(BonescraftLand plugin, PlaytimeTracker tracker) {
+        this.plugin = plugin;
+        this.tracker = tracker;
+        this.latency = plugin.getMetrics().handler("activitySample");
+        for (Player p : Bukkit.getOnlinePlayers()) track(p); // after /reload
+        reload();
+    }
+
+    /** Re-reads the afk-* settings; restarts the sample task if its interval changed. */
+    synchronized void reload() {
+        idleMs = Math.max(1, plugin.getConfig().getInt("afk-idle-seconds", 300)) * 1000L;
+        long ticks = Math.max(1, plugin.getConfig().getInt("afk-sample-seconds", 5)) * 20L;
+        if (task != null && ticks == sampleTicks) return;
+        if (task != null) task.cancel();
+        sampleTicks = ticks;
+        task = Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin, t -> sample(), ticks, ticks);
+    }
+
+    synchronized void close() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent e) {
+        track(e.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent e) {
+        untrack(e.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChat(AsyncChatEvent e) {
+        mark(e.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onCommand(PlayerCommandPreprocessEvent e) {
+        mark(e.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onInteract(PlayerInteractEvent e) {
+        mark(e.getPlayer());
+    }
+
+    private void mark(Player p) {
+        Integer slot = slots.get(p.getUniqueId());
+        if (slot == null) return;
+        byte[] flags = input;
+        if (slot < flags.length) flags[slot] = 1;
+    }
+
+    private synchronized void track(Player p) {
+        if (slots.containsKey(p.getUniqueId())) return;
+        int slot = 0;
+        while (slot < high && players[slot] != null) slot++;
+        if (slot == players.length) grow();
+        if (slot == high) high++;
+        Location loc = p.getLocation(scratch);
+        players[slot] = p;
+        xs[slot] = loc.getX();
+        ys[slot] = loc.getY();
+        zs[slot] = loc.getZ();
+        yaws[slot] = loc.getYaw();
+        pitches[slot] = loc.getPitch();
+        lastActive[slot] = System.currentTimeMillis();
+        idle[slot] = false;
+        input[slot] = 0;
+        slots.put(p.getUniqueId(), slot);
+    }
+
+    private synchronized void untrack(Player p) {
+        Integer slot = slots.remove(p.getUniqueId());
+        if (slot == null) return;
+        players[slot] = null;
+        while (high > 0 && players[high - 1] == null) high--;
+    }
+
+    private void grow() {
+        int n = players.length * 2;
+        players = Arrays.copyOf(players, n);
+        xs = Arrays.copyOf(xs, n);
+        ys = Arrays.copyOf(ys, n);
+        zs = Arrays.copyOf(zs, n);
+        yaws = Arrays.copyOf(yaws, n);
+        pitches = Arrays.copyOf(pitches, n);
+        lastActive = Arrays.copyOf(lastActive, n);
+        idle = Arrays.copyOf(idle, n);
+        input = Arrays.copyOf(input, n);
+    }
+
+    /** Runs on the global region thread; positions are read off the players' own threads. */
+    private synchronized void sample() {
+        long start = System.nanoTime();
+        long now = System.currentTimeMillis();
+        byte[] flags = input;
+        for (int s = 0; s < high; s++) {
+            Player p = players[s];
+            if (p == null) continue;
+            Location loc = p.getLocation(scratch);
+            double dx = loc.getX() - xs[s];
+            double dy = loc.getY() - ys[s];
+            double dz = loc.getZ() - zs[s];
+            boolean active = flags[s] != 0
+                    || Math.abs(loc.getYaw() - yaws[s]) > TURN
+                    || Math.abs(loc.getPitch() - pitches[s]) > TURN
+                    || dx * dx + dy * dy + dz * dz > MOVE_SQ && !p.isInsideVehicle();
+            flags[s] = 0;
+            xs[s] = loc.getX();
+            ys[s] = loc.getY();
+            zs[s] = loc.getZ();
+            yaws[s] = loc.getYaw();
+            pitches[s] = loc.getPitch();
+
+            if (active) {
+                lastActive[s] = now;
+                if (idle[s]) {
+                    idle[s] = false;
+                    tracker.setIdle(p.getUniqueId(), false, now);
+                }
+            } else if (!idle[s] && now - lastActive[s] >= idleMs) {
+                idle[s] = true;
+                tracker.setIdle(p.getUniqueId(), true, now);
+            }
+        }
+        latency.record(System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,55 @@
+package de.bonescraft.land;
+
+import org.bukkit.Material;
+
+import java.util.Set;
+
+/**
+ * What a block type means to the protection checks, precomputed for every {@link Material} when
+ * the class is loaded. Classifying a block is one array read, instead of
+ * {@code Block.getState()}, which snapshots the whole tile entity.
+ *
+ * Containers are the types whose tile state is a {@link org.bukkit.block.Container}; their
+ * owners are tracked in {@link ContainerOwnerStore}. Interactive types do something when clicked
+ * or stepped on (doors, buttons, pressure plates, farmland, ...). Everything else is inert.
+ */
+final class BlockClasses {
+    static final byte INERT = 0;
+    static final byte INTERACTIVE = 1;
+    static final byte CONTAINER = 2;
+
+    // By name, so types missing from older server versions are simply skipped
+    private static final Set<String> CONTAINERS = Set.of(
+            "CHEST", "TRAPPED_CHEST", "BARREL", "HOPPER", "DISPENSER", "DROPPER",
+            "FURNACE", "BLAST_FURNACE", "SMOKER", "BREWING_STAND", "CRAFTER");
+    /** Triggered by walking on them (Action.PHYSICAL), which isInteractable() does not cover. */
+    private static final Set<String> STEPPED_ON = Set.of(
+            "FARMLAND", "TURTLE_EGG", "SNIFFER_EGG", "TRIPWIRE", "REDSTONE_ORE", "DEEPSLATE_REDSTONE_ORE",
+            "SCULK_SENSOR", "CALIBRATED_SCULK_SENSOR", "SCULK_SHRIEKER", "BIG_DRIPLEAF");
+
+    private static final byte[] CLASSES;
+
+    static {
+        Material[] all = Material.values();
+        CLASSES = new byte[all.length];
+        for (Material m : all) {
+            String name = m.name();
+            if (name.startsWith("LEGACY_") || !m.isBlock()) continue;
+            if (CONTAINERS.contains(name) || name.endsWith("SHULKER_BOX")) {
+                CLASSES[m.ordinal()] = CONTAINER;
+            } else if (m.isInteractable() || STEPPED_ON.contains(name) || name.endsWith("PRESSURE_PLATE")) {
+                CLASSES[m.ordinal()] = INTERACTIVE;
+            }
+        }
+    }
+
+    private BlockClasses() {}
+
+    static byte of(Material type) {
+        return CLASSES[type.ordinal()];
+    }
+
+    static boolean isContainer(Material type) {
+        return CLASSES[type.ordinal()] == CONTAINER;
+    }
+}
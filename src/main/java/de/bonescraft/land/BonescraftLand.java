@@ -4,9 +4,19 @@ import org.bukkit.Bukkit;
 import org.bukkit.plugin.java.JavaPlugin;
 
 public class BonescraftLand extends JavaPlugin {
+    private final Metrics metrics = new Metrics();
+    private MetricsExporter metricsExporter;
     private ClaimManager claimManager;
     private ContainerOwnerStore containerOwnerStore;
     private PlaytimeTracker playtimeTracker;
+    private ActivitySampler activitySampler;
+    private PermissionCache permissionCache;
+    private ProtectionDecisionCache protectionDecisions;
+    private NameCache nameCache;
+    private ClaimBorderView claimBorders;
+    private ClaimTransfer claimTransfer;
+    private ClaimExpiry claimExpiry;
+    private boolean luckPermsHooked;
 
     @Override
     public void onEnable() {
@@ -15,35 +25,81 @@ public class BonescraftLand extends JavaPlugin {
         this.claimManager = new ClaimManager(this);
         this.containerOwnerStore = new ContainerOwnerStore(this);
         this.playtimeTracker = new PlaytimeTracker(this);
+        this.activitySampler = new ActivitySampler(this, playtimeTracker);
+        this.protectionDecisions = new ProtectionDecisionCache(this, claimManager);
+        this.permissionCache = new PermissionCache(this);
+        this.nameCache = new NameCache(this);
+        this.claimBorders = new ClaimBorderView(this, claimManager);
+        this.claimTransfer = new ClaimTransfer(this, claimManager);
+        this.claimExpiry = new ClaimExpiry(this, claimManager, playtimeTracker);
+        this.luckPermsHooked = Bukkit.getPluginManager().isPluginEnabled("LuckPerms");
 
         // Listeners
+        Bukkit.getPluginManager().registerEvents(permissionCache, this);
+        Bukkit.getPluginManager().registerEvents(protectionDecisions, this);
+        Bukkit.getPluginManager().registerEvents(nameCache, this);
+        Bukkit.getPluginManager().registerEvents(claimBorders, this);
+        Bukkit.getPluginManager().registerEvents(containerOwnerStore, this);
         Bukkit.getPluginManager().registerEvents(new ProtectionListener(this), this);
-        Bukkit.getPluginManager().registerEvents(playtimeTracker, this);
+        Bukkit.getPluginManager().registerEvents(new PlaytimeListener(playtimeTracker), this);
+        Bukkit.getPluginManager().registerEvents(activitySampler, this);
+        if (luckPermsHooked) {
+            LuckPermsHook.register(this, permissionCache);
+        }
+        permissionCache.refreshAll(); // players already online after /reload
+        nameCache.warmUp(claimManager);
+        this.metricsExporter = new MetricsExporter(this, metrics);
+        metricsExporter.start();
 
         // Commands
-        getCommand("land").setExecutor(new LandCommand(this));
-        getCommand("playtime").setExecutor(new PlaytimeCommand(this));
+        getCommand("land").setExecutor(new LandCommand(this, claimManager));
+        getCommand("playtime").setExecutor(new PlaytimeCommand(playtimeTracker, nameCache));
 
         getLogger().info("BonescraftLand enabled.");
     }
 
     @Override
     public void onDisable() {
-        if (playtimeTracker != null) {
-            playtimeTracker.flushAllOnline();
+        if (metricsExporter != null) {
+            metricsExporter.close();
+        }
+        if (claimBorders != null) {
+            claimBorders.close();
+        }
+        if (claimTransfer != null) {
+            claimTransfer.close();
+        }
+        if (claimExpiry != null) {
+            claimExpiry.close();
         }
         if (claimManager != null) {
-            claimManager.save();
+            claimManager.close();
         }
         if (containerOwnerStore != null) {
-            containerOwnerStore.save();
+            containerOwnerStore.close();
+        }
+        if (activitySampler != null) {
+            activitySampler.close();
         }
         if (playtimeTracker != null) {
-            playtimeTracker.save();
+            playtimeTracker.close();
+        }
+        if (nameCache != null) {
+            nameCache.close();
         }
         getLogger().info("BonescraftLand disabled.");
     }
 
+    /**
+     * Re-reads config.yml and everything derived from it.
+     */
+    public void reloadSettings() {
+        reloadConfig();
+        permissionCache.refreshAll();
+        claimBorders.reload();
+        activitySampler.reload();
+    }
+
     public ClaimManager getClaimManager() {
         return claimManager;
     }
@@ -55,4 +111,36 @@ public class BonescraftLand extends JavaPlugin {
     public PlaytimeTracker getPlaytimeTracker() {
         return playtimeTracker;
     }
+
+    public PermissionCache getPermissionCache() {
+        return permissionCache;
+    }
+
+    ClaimTransfer getClaimTransfer() {
+        return claimTransfer;
+    }
+
+    ClaimExpiry getClaimExpiry() {
+        return claimExpiry;
+    }
+
+    ProtectionDecisionCache getProtectionDecisions() {
+        return protectionDecisions;
+    }
+
+    public NameCache getNameCache() {
+        return nameCache;
+    }
+
+    ClaimBorderView getClaimBorders() {
+        return claimBorders;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    public boolean isLuckPermsHooked() {
+        return luckPermsHooked;
+    }
 }
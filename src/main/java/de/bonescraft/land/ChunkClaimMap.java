@@ -0,0 +1,139 @@
+package de.bonescraft.land;
+
+/**
+ * Map from chunk coordinates to claim ids of a single world: the chunk grid of the claim index.
+ * Every chunk covered by a claim holds that claim's id, so a point lookup is one probe here plus
+ * one id lookup, however large the claim.
+ *
+ * The grid is cut into tiles of 8x8 chunks (an array of ids, 0 = unclaimed), grouped into regions
+ * of 32x32 tiles, which a {@link LongObjectMap} finds by region position. A lookup is one probe and
+ * two array reads; it never boxes and never allocates.
+ *
+ * {@link #ChunkClaimMap(ChunkClaimMap)} copies nothing up front: the copy shares the regions and
+ * tiles and copies each one the first time it changes it. A change therefore costs the tiles it
+ * touches, their regions and the region directory (one entry per 256x256 chunks in use), not the
+ * whole grid. A grid must not be changed any more once it has been copied.
+ */
+final class ChunkClaimMap {
+    private static final int TILE_SHIFT = 3;
+    private static final int TILE_MASK = (1 << TILE_SHIFT) - 1;
+    private static final int REGION_SHIFT = 5;
+    private static final int REGION_MASK = (1 << REGION_SHIFT) - 1;
+    private static final int TILE_SIZE = 1 << (TILE_SHIFT * 2);
+    private static final int REGION_SIZE = 1 << (REGION_SHIFT * 2);
+
+    /** Tiles of one region; {@link #own} marks those created by {@link #editor}, safe to change in place. */
+    private static final class Region {
+        final Object editor;
+        final int[][] tiles;
+        final boolean[] own = new boolean[REGION_SIZE];
+
+        Region(Object editor, int[][] tiles) {
+            this.editor = editor;
+            this.tiles = tiles;
+        }
+    }
+
+    /** Identifies this map's own regions; not the map itself, so old maps are not kept reachable. */
+    private final Object editor = new Object();
+    private LongObjectMap<Region> regions;
+    private boolean ownRegions;
+    private int size;
+
+    ChunkClaimMap() {
+        regions = new LongObjectMap<>();
+        ownRegions = true;
+    }
+
+    /** Copy for publishing a changed grid while readers still use the old one; see above. */
+    ChunkClaimMap(ChunkClaimMap other) {
+        this.regions = other.regions;
+        this.size = other.size;
+    }
+
+    static long pack(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    static int unpackX(long key) {
+        return (int) (key >> 32);
+    }
+
+    static int unpackZ(long key) {
+        return (int) key;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** @return the id of the claim covering the chunk, or 0 */
+    int get(int chunkX, int chunkZ) {
+        Region r = regions.get(regionKey(chunkX, chunkZ));
+        if (r == null) return 0;
+        int[] tile = r.tiles[tileIndex(chunkX, chunkZ)];
+        return tile == null ? 0 : tile[chunkIndex(chunkX, chunkZ)];
+    }
+
+    /** Inserts or replaces the id at the chunk; returns the previous id or 0. */
+    int put(int chunkX, int chunkZ, int id) {
+        int[] tile = writableTile(chunkX, chunkZ);
+        int i = chunkIndex(chunkX, chunkZ);
+        int old = tile[i];
+        tile[i] = id;
+        if (old == 0) size++;
+        return old;
+    }
+
+    int remove(int chunkX, int chunkZ) {
+        if (get(chunkX, chunkZ) == 0) return 0;
+        int[] tile = writableTile(chunkX, chunkZ);
+        int i = chunkIndex(chunkX, chunkZ);
+        int old = tile[i];
+        tile[i] = 0;
+        size--;
+        for (int id : tile) {
+            if (id != 0) return old;
+        }
+        // Drop empty tiles so unclaimed land costs no memory
+        Region r = regions.get(regionKey(chunkX, chunkZ));
+        int t = tileIndex(chunkX, chunkZ);
+        r.tiles[t] = null;
+        r.own[t] = false;
+        return old;
+    }
+
+    /** The chunk's tile, copied (with its region and the directory) if this map does not own it yet. */
+    private int[] writableTile(int chunkX, int chunkZ) {
+        if (!ownRegions) {
+            regions = new LongObjectMap<>(regions);
+            ownRegions = true;
+        }
+        long key = regionKey(chunkX, chunkZ);
+        Region r = regions.get(key);
+        if (r == null || r.editor != editor) {
+            r = new Region(editor, r == null ? new int[REGION_SIZE][] : r.tiles.clone());
+            regions.put(key, r);
+        }
+        int t = tileIndex(chunkX, chunkZ);
+        int[] tile = r.tiles[t];
+        if (!r.own[t]) {
+            tile = tile == null ? new int[TILE_SIZE] : tile.clone();
+            r.tiles[t] = tile;
+            r.own[t] = true;
+        }
+        return tile;
+    }
+
+    private static long regionKey(int chunkX, int chunkZ) {
+        return pack(chunkX >> (TILE_SHIFT + REGION_SHIFT), chunkZ >> (TILE_SHIFT + REGION_SHIFT));
+    }
+
+    private static int tileIndex(int chunkX, int chunkZ) {
+        return (((chunkZ >> TILE_SHIFT) & REGION_MASK) << REGION_SHIFT) | ((chunkX >> TILE_SHIFT) & REGION_MASK);
+    }
+
+    private static int chunkIndex(int chunkX, int chunkZ) {
+        return ((chunkZ & TILE_MASK) << TILE_SHIFT) | (chunkX & TILE_MASK);
+    }
+}
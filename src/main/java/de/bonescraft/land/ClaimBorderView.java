@@ -0,0 +1,249 @@
+package de.bonescraft.land;
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.Bukkit;
+import org.bukkit.Color;
+import org.bukkit.Location;
+import org.bukkit.Particle;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@code /land show}: draws the borders of the claims around a player with dust particles for
+ * {@code show-seconds} - green for own claims, aqua where the player is trusted, red for others.
+ *
+ * Borders come from the claim index as merged edges: each side of a claim is drawn only where the
+ * neighbouring chunk does not belong to the same owner, and consecutive chunk sides form one
+ * segment. They are computed for the chunks within {@code show-radius-chunks} (capped by the
+ * player's view distance) and only recomputed when the player enters another chunk or claims
+ * change. Each viewer has its own task on the player's scheduler that sends the next slice of the
+ * border every {@code show-interval-ticks}, at most {@code show-particles-per-player} at once; all
+ * viewers together draw from a budget of {@code show-particles-per-tick}, so many viewers slow
+ * the animation down instead of the server.
+ */
+final class ClaimBorderView implements Listener, ClaimManager.ChangeListener {
+    private static final byte OWN = 0;
+    private static final byte TRUSTED = 1;
+    private static final byte FOREIGN = 2;
+    private static final Particle.DustOptions[] DUST = {
+            new Particle.DustOptions(Color.LIME, 1.5f),
+            new Particle.DustOptions(Color.AQUA, 1.5f),
+            new Particle.DustOptions(Color.RED, 1.5f),
+    };
+    /** Blocks between two particles of a border. */
+    private static final int SPACING = 2;
+    /** Borders are drawn slightly inside their claim, so two neighbouring claims show both colours. */
+    private static final double INSET = 0.3;
+
+    private final BonescraftLand plugin;
+    private final ClaimManager claims;
+    private final Map<UUID, View> views = new ConcurrentHashMap<>();
+    private final AtomicInteger budget = new AtomicInteger();
+    /** Incremented on every claim change; views built for an older epoch are rebuilt. */
+    private final AtomicInteger epoch = new AtomicInteger();
+    private volatile Settings settings;
+    private ScheduledTask refill;
+
+    private record Settings(long durationMs, int radius, int intervalTicks, int perPlayer, int perTick) {}
+
+    ClaimBorderView(BonescraftLand plugin, ClaimManager claims) {
+        this.plugin = plugin;
+        this.claims = claims;
+        reload();
+        claims.addChangeListener(this);
+        this.refill = Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin, t -> budget.set(settings.perTick()), 1, 1);
+    }
+
+    /** Re-reads the show-* settings; running views keep their interval. */
+    void reload() {
+        settings = new Settings(
+                Math.max(1, plugin.getConfig().getInt("show-seconds", 30)) * 1000L,
+                Math.max(1, plugin.getConfig().getInt("show-radius-chunks", 6)),
+                Math.max(1, plugin.getConfig().getInt("show-interval-ticks", 10)),
+                Math.max(1, plugin.getConfig().getInt("show-particles-per-player", 120)),
+                Math.max(1, plugin.getConfig().getInt("show-particles-per-tick", 2000)));
+    }
+
+    void close() {
+        if (refill != null) {
+            refill.cancel();
+            refill = null;
+        }
+        for (View v : views.values()) v.task.cancel();
+        views.clear();
+    }
+
+    /**
+     * Starts showing borders to the player, or stops if they are already shown.
+     *
+     * @return true if the borders are now shown
+     */
+    boolean toggle(Player player) {
+        View old = views.remove(player.getUniqueId());
+        if (old != null) {
+            old.task.cancel();
+            return false;
+        }
+        Settings s = settings;
+        View view = new View(System.currentTimeMillis() + s.durationMs());
+        views.put(player.getUniqueId(), view);
+        view.task = player.getScheduler().runAtFixedRate(plugin, t -> tick(player, view, t),
+                () -> views.remove(player.getUniqueId(), view), 1, s.intervalTicks());
+        if (view.task == null) views.remove(player.getUniqueId(), view);
+        return view.task != null;
+    }
+
+    long durationSeconds() {
+        return settings.durationMs() / 1000;
+    }
+
+    @Override
+    public void claimsChanged(String world, int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ) {
+        if (!views.isEmpty()) epoch.incrementAndGet();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent e) {
+        View v = views.remove(e.getPlayer().getUniqueId());
+        if (v != null) v.task.cancel();
+    }
+
+    /** Runs on the player's thread. */
+    private void tick(Player p, View v, ScheduledTask task) {
+        if (System.currentTimeMillis() >= v.until) {
+            task.cancel();
+            views.remove(p.getUniqueId(), v);
+            p.sendMessage("§7Claim borders hidden.");
+            return;
+        }
+        Location loc = p.getLocation();
+        String world = loc.getWorld() == null ? null : loc.getWorld().getName();
+        if (world == null) return;
+        int cx = loc.getBlockX() >> 4;
+        int cz = loc.getBlockZ() >> 4;
+        int e = epoch.get();
+        if (v.border == null || v.epoch != e || v.chunkX != cx || v.chunkZ != cz || !world.equals(v.world)) {
+            v.border = build(p.getUniqueId(), world, cx, cz, Math.min(settings.radius(), Math.max(2, p.getViewDistance())));
+            v.world = world;
+            v.chunkX = cx;
+            v.chunkZ = cz;
+            v.epoch = e;
+            v.cursor = 0;
+        }
+        Border b = v.border;
+        if (b.size == 0) return;
+        int n = take(Math.min(settings.perPlayer(), b.size));
+        double y = loc.getY() + 1.0;
+        for (int i = 0; i < n; i++) {
+            int at = v.cursor;
+            p.spawnParticle(Particle.REDSTONE, b.xs[at], y, b.zs[at], 1, 0, 0, 0, 0, DUST[b.kinds[at]]);
+            v.cursor = at + 1 == b.size ? 0 : at + 1;
+        }
+    }
+
+    /** Takes up to {@code wanted} particles from this tick's budget. */
+    private int take(int wanted) {
+        int before = budget.getAndUpdate(b -> Math.max(0, b - wanted));
+        return Math.min(wanted, before);
+    }
+
+    // ---- border geometry ------------------------------------------------------------------
+
+    private Border build(UUID viewer, String world, int cx, int cz, int radius) {
+        int minX = cx - radius;
+        int minZ = cz - radius;
+        int maxX = cx + radius;
+        int maxZ = cz + radius;
+        Border out = new Border();
+        for (ClaimManager.Claim c : claims.getClaimsIn(world, minX, minZ, maxX, maxZ)) {
+            byte kind = c.owner().equals(viewer) ? OWN : c.members().containsKey(viewer) ? TRUSTED : FOREIGN;
+            int fromX = Math.max(c.minX(), minX);
+            int toX = Math.min(c.maxX(), maxX);
+            int fromZ = Math.max(c.minZ(), minZ);
+            int toZ = Math.min(c.maxZ(), maxZ);
+            if (c.minZ() >= minZ) alongX(out, world, c, kind, fromX, toX, c.minZ() - 1, (c.minZ() << 4) + INSET);
+            if (c.maxZ() <= maxZ) alongX(out, world, c, kind, fromX, toX, c.maxZ() + 1, ((c.maxZ() + 1) << 4) - INSET);
+            if (c.minX() >= minX) alongZ(out, world, c, kind, fromZ, toZ, c.minX() - 1, (c.minX() << 4) + INSET);
+            if (c.maxX() <= maxX) alongZ(out, world, c, kind, fromZ, toZ, c.maxX() + 1, ((c.maxX() + 1) << 4) - INSET);
+        }
+        return out;
+    }
+
+    /** A north or south side: chunks fromX..toX, facing the chunks in row {@code outsideZ}. */
+    private void alongX(Border out, String world, ClaimManager.Claim c, byte kind, int fromX, int toX, int outsideZ, double z) {
+        int run = Integer.MIN_VALUE;
+        for (int x = fromX; x <= toX + 1; x++) {
+            boolean edge = x <= toX && !sameOwner(c, world, x, outsideZ);
+            if (edge && run == Integer.MIN_VALUE) {
+                run = x;
+            } else if (!edge && run != Integer.MIN_VALUE) {
+                for (double bx = (run << 4) + INSET; bx <= (x << 4) - INSET; bx += SPACING) out.add(bx, z, kind);
+                run = Integer.MIN_VALUE;
+            }
+        }
+    }
+
+    /** A west or east side: chunks fromZ..toZ, facing the chunks in column {@code outsideX}. */
+    private void alongZ(Border out, String world, ClaimManager.Claim c, byte kind, int fromZ, int toZ, int outsideX, double x) {
+        int run = Integer.MIN_VALUE;
+        for (int z = fromZ; z <= toZ + 1; z++) {
+            boolean edge = z <= toZ && !sameOwner(c, world, outsideX, z);
+            if (edge && run == Integer.MIN_VALUE) {
+                run = z;
+            } else if (!edge && run != Integer.MIN_VALUE) {
+                for (double bz = (run << 4) + INSET; bz <= (z << 4) - INSET; bz += SPACING) out.add(x, bz, kind);
+                run = Integer.MIN_VALUE;
+            }
+        }
+    }
+
+    private boolean sameOwner(ClaimManager.Claim c, String world, int chunkX, int chunkZ) {
+        ClaimManager.Claim n = claims.getClaimAt(world, chunkX, chunkZ);
+        return n != null && n.owner().equals(c.owner());
+    }
+
+    /** Particle positions of all borders around a player, in primitive arrays. */
+    private static final class Border {
+        double[] xs = new double[64];
+        double[] zs = new double[64];
+        byte[] kinds = new byte[64];
+        int size;
+
+        void add(double x, double z, byte kind) {
+            if (size == xs.length) {
+                xs = Arrays.copyOf(xs, size * 2);
+                zs = Arrays.copyOf(zs, size * 2);
+                kinds = Arrays.copyOf(kinds, size * 2);
+            }
+            xs[size] = x;
+            zs[size] = z;
+            kinds[size] = kind;
+            size++;
+        }
+    }
+
+    /** One viewer; apart from the task, only touched on the player's thread. */
+    private static final class View {
+        final long until;
+        volatile ScheduledTask task;
+        Border border;
+        String world;
+        int chunkX;
+        int chunkZ;
+        int epoch;
+        int cursor;
+
+        View(long until) {
+            this.until = until;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package de.bonescraft.land;
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.Bukkit;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Releases the claims of owners who have not been online for {@code claim-expiry-months}: no
+ * playtime, active or idle, in the current month and the months before it.
+ *
+ * A pass takes the list of owners once and then checks {@code claim-expiry-owners-per-batch} of
+ * them per second on an async thread, so even a large server is never swept in one go. The check
+ * is a few lookups in the {@link PlaytimeTracker}; expired claims go through
+ * {@link ClaimManager#unclaimArea} like any other unclaim, so the storage, the index and the
+ * change listeners shrink with them. Every pass writes the claims it released, or would have
+ * released in {@code claim-expiry-dry-run} mode, to a new {@code transfer/expiry-<date>-<time>.csv};
+ * the file is in the {@link ClaimTransfer} format, so released claims can be restored with
+ * {@code /land admin import}. Passes repeat every {@code claim-expiry-pass-hours}, counted from
+ * the start of the last pass, which is kept in {@code expiry-last-pass.txt} so a restart does not
+ * start the next one early.
+ *
+ * Expiry waits until the playtime data covers the whole period, starting before it; otherwise
+ * every owner would look inactive right after playtime tracking was introduced.
+ */
+final class ClaimExpiry {
+    private static final long BATCH_MS = 1000;
+    private static final DateTimeFormatter REPORT_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd-HHmmss");
+
+    private final BonescraftLand plugin;
+    private final ClaimManager claims;
+    private final PlaytimeTracker playtime;
+    private final Path dir;
+    private final Path lastPassFile;
+    private ScheduledTask task;
+
+    // Touched only while holding this; the batches run on one async task
+    private Pass pass;
+    private long nextPassAt;
+    private boolean runRequested;
+    private Result last;
+
+    /** Settings are read when a pass starts, so a reload applies from the next pass. */
+    private record Settings(int months, boolean dryRun, int ownersPerBatch, long passIntervalMs, Set<UUID> exempt) {}
+
+    /** Outcome of a finished pass. */
+    record Result(boolean dryRun, YearMonth since, int owners, int expiredOwners, int claims, int chunks, Path report) {}
+
+    private static final class Pass {
+        final Settings settings;
+        final YearMonth since;
+        final List<UUID> owners;
+        int next;
+        int expiredOwners;
+        int claims;
+        int chunks;
+        Path report;
+        BufferedWriter out;
+
+        Pass(Settings settings, YearMonth since, List<UUID> owners) {
+            this.settings = settings;
+            this.since = since;
+            this.owners = owners;
+        }
+    }
+
+    ClaimExpiry(BonescraftLand plugin, ClaimManager claims, PlaytimeTracker playtime) {
+        this.plugin = plugin;
+        this.claims = claims;
+        this.playtime = playtime;
+        this.dir = plugin.getDataFolder().toPath().resolve("transfer");
+        this.lastPassFile = plugin.getDataFolder().toPath().resolve("expiry-last-pass.txt");
+        // A minute after startup at the earliest, once everything is loaded
+        this.nextPassAt = Math.max(System.currentTimeMillis() + 60_000, readLastPass() + passIntervalMs());
+        this.task = Bukkit.getAsyncScheduler().runAtFixedRate(plugin, t -> tick(), BATCH_MS, BATCH_MS, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void close() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        if (pass != null) {
+            closeReport(pass);
+            pass = null;
+        }
+    }
+
+    /** Starts a pass with the next batch instead of waiting for the interval. */
+    synchronized void runNow() {
+        runRequested = true;
+    }
+
+    /** One line for {@code /land admin expiry}: what is going on right now. */
+    synchronized String status() {
+        Settings s = settings();
+        if (s.months() <= 0) return "§7Claim expiry is off (claim-expiry-months: 0).";
+        String mode = s.dryRun() ? " §7(dry run)" : "";
+        if (pass != null) {
+            return "§aScanning owners: §f" + pass.next + "/" + pass.owners.size() + mode
+                    + " §7- " + pass.claims + " claims of " + pass.expiredOwners + " owners expired so far.";
+        }
+        long minutes = Math.max(0, (nextPassAt - System.currentTimeMillis()) / 60_000);
+        return "§aClaims expire after §f" + s.months() + " §amonths without playtime" + mode
+                + "§a. Next pass in §f" + minutes + " §amin.";
+    }
+
+    synchronized Result lastResult() {
+        return last;
+    }
+
+    private Settings settings() {
+        Set<UUID> exempt = new HashSet<>();
+        for (String raw : plugin.getConfig().getStringList("claim-expiry-exempt-owners")) {
+            try {
+                exempt.add(UUID.fromString(raw.trim()));
+            } catch (IllegalArgumentException e) {
+                plugin.getLogger().warning("Ignoring invalid UUID in claim-expiry-exempt-owners: " + raw);
+            }
+        }
+        return new Settings(
+                plugin.getConfig().getInt("claim-expiry-months", 0),
+                plugin.getConfig().getBoolean("claim-expiry-dry-run", true),
+                Math.max(1, plugin.getConfig().getInt("claim-expiry-owners-per-batch", 200)),
+                passIntervalMs(),
+                exempt);
+    }
+
+    private long passIntervalMs() {
+        return Math.max(1, plugin.getConfig().getInt("claim-expiry-pass-hours", 24)) * 3_600_000L;
+    }
+
+    private synchronized void tick() {
+        if (task == null) return;
+        long now = System.currentTimeMillis();
+        if (pass == null) {
+            if (!runRequested && now < nextPassAt) return;
+            runRequested = false;
+            pass = start();
+            if (pass == null) return;
+        }
+        step(pass);
+        if (pass.next >= pass.owners.size()) finish(pass);
+    }
+
+    private Pass start() {
+        Settings s = settings();
+        long now = System.currentTimeMillis();
+        nextPassAt = now + s.passIntervalMs();
+        if (s.months() <= 0) return null;
+        YearMonth since = YearMonth.now().minusMonths(s.months() - 1);
+        // The first recorded month may have been tracked only in part
+        YearMonth first = playtime.getFirstMonth();
+        if (first == null || !first.isBefore(since)) {
+            plugin.getLogger().info("Claim expiry waits for playtime data from before " + since
+                    + (first == null ? " (none recorded yet)" : " (recorded since " + first + ")"));
+            return null;
+        }
+        writeLastPass(now);
+        return new Pass(s, since, claims.getOwners());
+    }
+
+    /** Start of the last pass in epoch millis, or 0 if none is recorded. */
+    private long readLastPass() {
+        try {
+            return Long.parseLong(Files.readString(lastPassFile, StandardCharsets.UTF_8).trim());
+        } catch (NoSuchFileException e) {
+            return 0;
+        } catch (IOException | NumberFormatException e) {
+            plugin.getLogger().warning("Could not read " + lastPassFile.getFileName() + ": " + e.getMessage());
+            return 0;
+        }
+    }
+
+    private void writeLastPass(long startedAt) {
+        try {
+            Path tmp = lastPassFile.resolveSibling(lastPassFile.getFileName() + ".tmp");
+            Files.writeString(tmp, Long.toString(startedAt), StandardCharsets.UTF_8);
+            WriteBehindWriter.moveAtomically(tmp, lastPassFile);
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not write " + lastPassFile.getFileName() + ": " + e.getMessage());
+        }
+    }
+
+    private void step(Pass p) {
+        int end = Math.min(p.owners.size(), p.next + p.settings.ownersPerBatch());
+        for (; p.next < end; p.next++) {
+            UUID owner = p.owners.get(p.next);
+            if (p.settings.exempt().contains(owner) || playtime.seenSince(owner, p.since)) continue;
+            List<ClaimManager.Claim> owned = claims.getClaimsOf(owner);
+            if (owned.isEmpty()) continue;
+            p.expiredOwners++;
+            for (ClaimManager.Claim c : owned) {
+                record(p, c);
+                if (!p.settings.dryRun()) {
+                    claims.unclaimArea(c.world(), c.minX(), c.minZ(), c.maxX(), c.maxZ(), owner);
+                }
+                p.claims++;
+                p.chunks += c.chunks();
+            }
+        }
+        // Released claims must be in the report even if the server stops before the pass ends
+        if (p.out != null) {
+            try {
+                p.out.flush();
+            } catch (IOException e) {
+                plugin.getLogger().warning("Could not write the claim expiry report: " + e.getMessage());
+                closeReport(p);
+            }
+        }
+    }
+
+    private void finish(Pass p) {
+        closeReport(p);
+        pass = null;
+        last = new Result(p.settings.dryRun(), p.since, p.owners.size(), p.expiredOwners, p.claims, p.chunks, p.report);
+        if (p.claims == 0) return;
+        plugin.getLogger().info("Claim expiry" + (p.settings.dryRun() ? " (dry run): would have released " : ": released ")
+                + p.claims + " claims (" + p.chunks + " chunks) of " + p.expiredOwners + " owners without playtime since "
+                + p.since + (p.report == null ? "" : ", see transfer/" + p.report.getFileName()));
+    }
+
+    /** Appends the claim to the pass's report; a report that cannot be written is dropped, not the pass. */
+    private void record(Pass p, ClaimManager.Claim c) {
+        try {
+            if (p.out == null && p.report == null) {
+                Files.createDirectories(dir);
+                openReport(p);
+                p.out.write("# " + (p.settings.dryRun() ? "Dry run, not released" : "Released")
+                        + ": claims of owners without playtime since " + p.since);
+                p.out.newLine();
+            }
+            if (p.out == null) return;
+            p.out.write(ClaimTransfer.format(c));
+            p.out.newLine();
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not write the claim expiry report: " + e.getMessage());
+            closeReport(p);
+        }
+    }
+
+    /**
+     * Opens a report no earlier pass has written: never truncate one, it may be the only list of
+     * the claims that pass released.
+     */
+    private void openReport(Pass p) throws IOException {
+        String name = "expiry-" + LocalDateTime.now().format(REPORT_TIME);
+        for (int n = 1; ; n++) {
+            // Set before opening, so a report that cannot be created is not tried again for every claim
+            p.report = dir.resolve(n == 1 ? name + ".csv" : name + "-" + n + ".csv");
+            try {
+                p.out = Files.newBufferedWriter(p.report, StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                return;
+            } catch (FileAlreadyExistsException e) {
+                // Another pass in the same second
+            }
+        }
+    }
+
+    private void closeReport(Pass p) {
+        if (p.out == null) return;
+        try {
+            p.out.close();
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not write the claim expiry report: " + e.getMessage());
+        }
+        p.out = null;
+    }
+}
@@ -4,60 +4,140 @@ import org.bukkit.Bukkit;
 import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.World;
-import org.bukkit.configuration.ConfigurationSection;
-import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.permissions.PermissionAttachmentInfo;
 
-import java.io.File;
-import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 /**
- * Stores claimed chunks.
- * Data format: worldName -> chunkKey "x,z" -> ownerUUID + members[]
+ * Stores claims: rectangles of chunks in one world with one owner and one shared member list.
+ *
+ * Claims live in an id -> {@link Claim} map; a per-world {@link ChunkClaimMap} (the chunk grid)
+ * holds the id of the claim covering each claimed chunk. A point lookup is therefore two
+ * probes, and a trust change replaces a single {@link Claim} however many chunks it covers.
+ * Area queries walk the grid column by column and skip over each claim they hit.
+ *
+ * The index is published as an immutable snapshot, so lookups from any thread (region threads on
+ * Folia) never lock. Mutations are serialized on a lock and copy only what they change: the
+ * stripes of the claim and owner maps holding the changed claims ({@link CopyOnWriteStripes}), the
+ * grid tiles they cover ({@link ChunkClaimMap}) and the id sets of the affected owners. A change
+ * costs about the same however many claims the server has.
+ *
+ * The index is the source of truth while the plugin runs; every mutation is reported to the
+ * configured {@link ClaimStorage}, which persists it in the background (claims.yml, the binary
+ * journal or a database shared with other servers, see {@code storage-type}).
  */
 public class ClaimManager {
     private final BonescraftLand plugin;
-    private final File file;
-    private YamlConfiguration cfg;
+    private final Logger log;
+    /** Current index; never modified after it is published. */
+    private volatile Index index = Index.empty();
+    /** Serializes mutations and guards {@link #nextId}; lookups never take it. */
+    private final Object writeLock = new Object();
+    private final ClaimStorage storage;
+    private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final LongAdder lookups;
+    private final LongAdder lookupHits;
+    private int nextId;
 
     public ClaimManager(BonescraftLand plugin) {
-        this.plugin = plugin;
-        this.file = new File(plugin.getDataFolder(), "claims.yml");
-        reload();
+        this(plugin, snapshot -> ClaimStorage.create(plugin, snapshot));
     }
 
-    public void reload() {
-        if (!file.exists()) {
-            try {
-                plugin.getDataFolder().mkdirs();
-                file.createNewFile();
-            } catch (IOException e) {
-                plugin.getLogger().severe("Could not create claims.yml: " + e.getMessage());
+    /**
+     * @param storage creates the backend from the snapshot supplier; the benchmarks and tests
+     *                pass their own and no plugin
+     */
+    ClaimManager(BonescraftLand plugin, Function<Supplier<List<Claim>>, ClaimStorage> storage) {
+        this.plugin = plugin;
+        this.log = plugin == null ? Logger.getLogger(ClaimManager.class.getName()) : plugin.getLogger();
+        Metrics metrics = Metrics.of(plugin);
+        this.lookups = metrics.claimLookups;
+        this.lookupHits = metrics.claimLookupHits;
+        this.storage = storage.apply(this::snapshot);
+        synchronized (writeLock) {
+            nextId = this.storage.firstId();
+            Edit edit = new Edit(index);
+            List<Claim> overlaps = new ArrayList<>();
+            for (Claim c : this.storage.load()) {
+                if (edit.next.claim(c.id()) != null) {
+                    log.warning("Skipping claim #" + c.id() + ": the id is used twice");
+                    continue;
+                }
+                if (!edit.next.claimsIn(c.world(), c.minX(), c.minZ(), c.maxX(), c.maxZ()).isEmpty()) {
+                    log.warning("Releasing claim #" + c.id() + " in " + c.world()
+                            + " at " + chunkKey(c.minX(), c.minZ()) + ": overlaps another claim");
+                    overlaps.add(c);
+                    continue;
+                }
+                edit.insert(c);
+                if (c.id() >= this.storage.firstId() && c.id() <= this.storage.lastId()) {
+                    nextId = Math.max(nextId, c.id() + 1);
+                }
             }
+            index = edit.next;
+            // Otherwise the claim stays in the storage and is skipped again on every start
+            if (!overlaps.isEmpty()) this.storage.changed(overlaps, List.of());
         }
-        this.cfg = YamlConfiguration.loadConfiguration(file);
+        this.storage.start(this);
     }
 
-    public void save() {
-        try {
-            cfg.save(file);
-        } catch (IOException e) {
-            plugin.getLogger().severe("Could not save claims.yml: " + e.getMessage());
-        }
+    /**
+     * Writes all pending changes synchronously and stops the background writer.
+     */
+    public void close() {
+        storage.close();
     }
 
-    public int getMaxClaimSizeFor(org.bukkit.entity.Player player) {
+    private List<Claim> snapshot() {
+        List<Claim> out = new ArrayList<>();
+        forEachClaim(out::add);
+        return out;
+    }
+
+    /**
+     * Resolves the largest claim size granted to the player. Walks the effective permissions
+     * once instead of probing every possible number; callers should use the cached value from
+     * {@link PermissionCache} rather than calling this per command.
+     */
+    public int getMaxClaimSizeFor(Player player) {
+        int ceiling = plugin.getConfig().getInt("claim-size-ceiling", 100);
+        if (ceiling <= 0) ceiling = Integer.MAX_VALUE;
+        if (player.isOp()) return ceiling; // ops used to match every size node
+
         int max = plugin.getConfig().getInt("max-claim-size", 1);
 
         // Generic permission prefix support: bonescraft.claim.size.<number>
         String prefix = plugin.getConfig().getString("permissions.claim_size_prefix", "bonescraft.claim.size.");
-        for (int i = 1; i <= 100; i++) {
-            if (player.hasPermission(prefix + i)) {
-                max = Math.max(max, i);
-            }
+        for (PermissionAttachmentInfo info : player.getEffectivePermissions()) {
+            if (!info.getValue()) continue;
+            String perm = info.getPermission();
+            if (perm.length() <= prefix.length() || !perm.regionMatches(true, 0, prefix, 0, prefix.length())) continue;
+            max = Math.max(max, parseSize(perm.substring(prefix.length())));
+        }
+
+        // LuckPerms meta, e.g. /lp group vip meta set bonescraft-claim-size 25
+        if (plugin.isLuckPermsHooked()) {
+            String metaKey = plugin.getConfig().getString("permissions.claim_size_meta", "bonescraft-claim-size");
+            max = Math.max(max, parseSize(LuckPermsHook.metaValue(player, metaKey)));
+        }
+        return Math.min(max, ceiling);
+    }
+
+    private static int parseSize(String raw) {
+        if (raw == null) return 0;
+        try {
+            return Integer.parseInt(raw.trim());
+        } catch (NumberFormatException e) {
+            return 0;
         }
-        return max;
     }
 
     public int getDefaultClaimSize() {
@@ -65,38 +145,40 @@ public class ClaimManager {
     }
 
     public Claim getClaimAt(Location loc) {
-        if (loc == null || loc.getWorld() == null) return null;
-        Chunk c = loc.getChunk();
-        return getClaimAt(c.getWorld().getName(), c.getX(), c.getZ());
+        if (loc == null) return null;
+        World world = loc.getWorld();
+        if (world == null) return null;
+        // Block coordinates -> chunk coordinates without loading the chunk
+        return getClaimAt(world.getName(), loc.getBlockX() >> 4, loc.getBlockZ() >> 4);
+    }
+
+    public Claim getClaimAt(Chunk chunk) {
+        if (chunk == null) return null;
+        return getClaimAt(chunk.getWorld().getName(), chunk.getX(), chunk.getZ());
     }
 
     public Claim getClaimAt(String world, int chunkX, int chunkZ) {
-        String key = chunkKey(chunkX, chunkZ);
-        ConfigurationSection sec = cfg.getConfigurationSection(world);
-        if (sec == null) return null;
-        ConfigurationSection claimSec = sec.getConfigurationSection(key);
-        if (claimSec == null) return null;
-        String ownerStr = claimSec.getString("owner");
-        if (ownerStr == null) return null;
-        UUID owner;
-        try {
-            owner = UUID.fromString(ownerStr);
-        } catch (IllegalArgumentException e) {
-            return null;
-        }
-        List<String> memberStrs = claimSec.getStringList("members");
-        Map<UUID, TrustLevel> members = new HashMap<>();
-        for (String s : memberStrs) {
-            if (s == null || s.isBlank()) continue;
-            // Format: uuid:LEVEL  OR legacy: uuid
-            String[] parts = s.split(":", 2);
-            try {
-                UUID id = UUID.fromString(parts[0].trim());
-                TrustLevel lvl = parts.length == 2 ? TrustLevel.parse(parts[1]) : TrustLevel.BUILD;
-                members.put(id, lvl);
-            } catch (IllegalArgumentException ignored) {}
-        }
-        return new Claim(world, chunkX, chunkZ, owner, members);
+        lookups.increment();
+        Index idx = index;
+        ChunkClaimMap map = idx.grids().get(world);
+        if (map == null) return null;
+        int id = map.get(chunkX, chunkZ);
+        if (id == 0) return null;
+        lookupHits.increment();
+        return idx.claim(id);
+    }
+
+    /** Current version of the claim with this id, or {@code null} if it was removed. */
+    public Claim getClaim(int id) {
+        return index.claim(id);
+    }
+
+    /**
+     * Every claim overlapping the rectangle, each once. Costs one grid probe per unclaimed chunk
+     * in the rectangle; the rest of a claim's column is skipped once it is hit.
+     */
+    public List<Claim> getClaimsIn(String world, int minX, int minZ, int maxX, int maxZ) {
+        return index.claimsIn(world, minX, minZ, maxX, maxZ);
     }
 
     public boolean isOwner(UUID player, Claim claim) {
@@ -144,68 +226,262 @@ public class ClaimManager {
     }
 
     public boolean setClaim(String world, int chunkX, int chunkZ, UUID owner) {
-        if (getClaimAt(world, chunkX, chunkZ) != null) return false;
-        String key = chunkKey(chunkX, chunkZ);
-        ConfigurationSection worldSec = cfg.getConfigurationSection(world);
-        if (worldSec == null) worldSec = cfg.createSection(world);
-        ConfigurationSection claimSec = worldSec.createSection(key);
-        claimSec.set("owner", owner.toString());
-        claimSec.set("members", new ArrayList<String>());
-        save();
-        return true;
+        return claimArea(world, chunkX, chunkZ, chunkX, chunkZ, owner).claimed() > 0;
     }
 
-    public int claimSquare(World world, int centerChunkX, int centerChunkZ, int size, UUID owner) {
-        if (world == null) return 0;
+    /**
+     * Claims the size x size square around the origin chunk (see {@link #claimArea(String, int, int, int, int, UUID)}).
+     */
+    public AreaClaimResult claimArea(UUID owner, Chunk origin, int size) {
         int half = (size - 1) / 2;
-        int startX = centerChunkX - half;
-        int startZ = centerChunkZ - half;
+        int minX = origin.getX() - half;
+        int minZ = origin.getZ() - half;
+        return claimArea(origin.getWorld().getName(), minX, minZ, minX + size - 1, minZ + size - 1, owner);
+    }
+
+    /**
+     * Claims the free part of the rectangle for the owner, all or nothing.
+     *
+     * If any chunk in it belongs to someone else nothing is claimed and the result lists exactly
+     * those chunks. Chunks the owner already has stay in their claims; the rest of the rectangle
+     * becomes one new claim, or a few if existing claims cut into it. Everything is reported to
+     * the storage and to the change listeners once.
+     */
+    public AreaClaimResult claimArea(String world, int minX, int minZ, int maxX, int maxZ, UUID owner) {
+        Rect area = new Rect(minX, minZ, maxX, maxZ);
+        List<ChunkPos> conflicts = new ArrayList<>();
+        List<Rect> free = new ArrayList<>(List.of(area));
+        int alreadyOwned = 0;
         int claimed = 0;
-        for (int dx = 0; dx < size; dx++) {
-            for (int dz = 0; dz < size; dz++) {
-                int x = startX + dx;
-                int z = startZ + dz;
-                if (getClaimAt(world.getName(), x, z) == null) {
-                    if (setClaim(world.getName(), x, z, owner)) claimed++;
+        synchronized (writeLock) {
+            Index current = index;
+            for (Claim c : current.claimsIn(world, minX, minZ, maxX, maxZ)) {
+                Rect overlap = area.intersect(c.bounds());
+                if (c.owner().equals(owner)) {
+                    alreadyOwned += overlap.chunks();
+                    free = subtractAll(free, overlap);
+                    continue;
                 }
+                for (int x = overlap.minX(); x <= overlap.maxX(); x++) {
+                    for (int z = overlap.minZ(); z <= overlap.maxZ(); z++) conflicts.add(new ChunkPos(x, z));
+                }
+            }
+            if (!conflicts.isEmpty()) {
+                conflicts.sort(Comparator.comparingInt(ChunkPos::x).thenComparingInt(ChunkPos::z));
+                return new AreaClaimResult(0, alreadyOwned, conflicts);
             }
+            if (free.isEmpty()) return new AreaClaimResult(0, alreadyOwned, List.of());
+
+            Edit edit = new Edit(current);
+            List<Claim> added = new ArrayList<>(free.size());
+            for (Rect r : free) {
+                Claim claim = new Claim(newId(), world, r.minX(), r.minZ(), r.maxX(), r.maxZ(), owner, Map.of());
+                edit.insert(claim);
+                added.add(claim);
+                claimed += r.chunks();
+            }
+            index = edit.next;
+            storage.changed(List.of(), added);
         }
-        return claimed;
+        fireChanged(world, minX, minZ, maxX, maxZ);
+        return new AreaClaimResult(claimed, alreadyOwned, List.of());
+    }
+
+    /**
+     * Adds whole claims at once, e.g. from an import. Claims that overlap an existing claim or an
+     * earlier one in the list are skipped. The ids of the given claims are ignored; every added
+     * claim gets a new one. The list is one index edit, one storage event and one notification per
+     * world, however many claims it holds.
+     *
+     * @return the added claims, with their ids
+     */
+    public List<Claim> addClaims(List<Claim> claims) {
+        List<Claim> added = new ArrayList<>(claims.size());
+        Map<String, Rect> touched = new HashMap<>();
+        synchronized (writeLock) {
+            Edit edit = new Edit(index);
+            for (Claim c : claims) {
+                if (!edit.next.claimsIn(c.world(), c.minX(), c.minZ(), c.maxX(), c.maxZ()).isEmpty()) continue;
+                Claim claim = new Claim(newId(), c.world(), c.minX(), c.minZ(), c.maxX(), c.maxZ(), c.owner(), c.members());
+                edit.insert(claim);
+                added.add(claim);
+                touched.merge(claim.world(), claim.bounds(), Rect::union);
+            }
+            if (added.isEmpty()) return added;
+            index = edit.next;
+            storage.changed(List.of(), added);
+        }
+        touched.forEach((world, r) -> fireChanged(world, r.minX(), r.minZ(), r.maxX(), r.maxZ()));
+        return added;
+    }
+
+    /**
+     * Claims the free chunks of the square; kept for older callers. Unlike before, the square is
+     * claimed all or nothing: if any chunk belongs to someone else, nothing is claimed.
+     */
+    public int claimSquare(World world, int centerChunkX, int centerChunkZ, int size, UUID owner) {
+        if (world == null) return 0;
+        int half = (size - 1) / 2;
+        int minX = centerChunkX - half;
+        int minZ = centerChunkZ - half;
+        return claimArea(world.getName(), minX, minZ, minX + size - 1, minZ + size - 1, owner).claimed();
     }
 
     public int unclaimSquare(World world, int centerChunkX, int centerChunkZ, int size, UUID owner) {
         if (world == null) return 0;
         int half = (size - 1) / 2;
-        int startX = centerChunkX - half;
-        int startZ = centerChunkZ - half;
-        int removed = 0;
-        ConfigurationSection worldSec = cfg.getConfigurationSection(world.getName());
-        if (worldSec == null) return 0;
-        for (int dx = 0; dx < size; dx++) {
-            for (int dz = 0; dz < size; dz++) {
-                int x = startX + dx;
-                int z = startZ + dz;
-                String key = chunkKey(x, z);
-                Claim claim = getClaimAt(world.getName(), x, z);
-                if (claim != null && claim.owner().equals(owner)) {
-                    worldSec.set(key, null);
-                    removed++;
+        int minX = centerChunkX - half;
+        int minZ = centerChunkZ - half;
+        return unclaimArea(world.getName(), minX, minZ, minX + size - 1, minZ + size - 1, owner);
+    }
+
+    /**
+     * Removes the rectangle from the owner's claims with one storage event and one notification.
+     * Claims that stick out of the rectangle are cut down to the remaining pieces (at most four
+     * per claim), which keep the owner and members.
+     *
+     * @param owner only chunks of this owner are removed; {@code null} removes every claim
+     * @return number of unclaimed chunks
+     */
+    public int unclaimArea(String world, int minX, int minZ, int maxX, int maxZ, UUID owner) {
+        Rect area = new Rect(minX, minZ, maxX, maxZ);
+        List<Claim> removed = new ArrayList<>();
+        List<Claim> added = new ArrayList<>();
+        int chunks = 0;
+        synchronized (writeLock) {
+            Index current = index;
+            Edit edit = null;
+            for (Claim c : current.claimsIn(world, minX, minZ, maxX, maxZ)) {
+                if (owner != null && !c.owner().equals(owner)) continue;
+                if (edit == null) edit = new Edit(current);
+                edit.delete(c);
+                removed.add(c);
+                chunks += area.intersect(c.bounds()).chunks();
+                for (Rect piece : c.bounds().subtract(area)) {
+                    Claim rest = new Claim(newId(), world, piece.minX(), piece.minZ(), piece.maxX(), piece.maxZ(), c.owner(), c.members());
+                    edit.insert(rest);
+                    added.add(rest);
+                }
+            }
+            if (edit == null) return 0;
+            index = edit.next;
+            storage.changed(removed, added);
+        }
+        fireChanged(world, minX, minZ, maxX, maxZ);
+        return chunks;
+    }
+
+    /**
+     * Removes the whole claim covering the chunk the command was run in.
+     *
+     * @param bypass allows removing someone else's claim
+     * @return number of removed chunks, 0 if there was no claim or the actor may not remove it
+     */
+    public int unclaimAt(Chunk chunk, UUID actor, boolean bypass) {
+        Claim claim;
+        synchronized (writeLock) {
+            claim = getClaimAt(chunk);
+            if (claim == null) return 0;
+            if (!bypass && !claim.owner().equals(actor)) return 0;
+            Edit edit = new Edit(index);
+            edit.delete(claim);
+            index = edit.next;
+            storage.changed(List.of(claim), List.of());
+        }
+        fireChanged(claim.world(), claim.minX(), claim.minZ(), claim.maxX(), claim.maxZ());
+        return claim.chunks();
+    }
+
+    /**
+     * Brings claims changed by another server up to date ({@link SqlClaimStorage}): every id maps
+     * to the claim's current state, or to {@code null} if it was removed. These changes are not
+     * reported back to the storage.
+     *
+     * Two servers may claim the same chunks before they see each other's claim. Every server then
+     * keeps the claim with the lower id and releases the other one through the storage, so they
+     * all end up with the same claims. That includes a remote claim that loses: its own server may
+     * be offline and would not release it before its next start. A claim in {@code busy} has local
+     * writes queued, so whether it still stands is not known yet; a remote claim that would lose
+     * only to such claims is left out and its id returned, to be fetched again later.
+     *
+     * Claims that are already up to date, such as this server's own changes coming back, cost a
+     * map lookup and no index copy.
+     */
+    Set<Integer> applyRemote(Map<Integer, Claim> changes, Set<Integer> busy) {
+        Map<String, Rect> touched = new HashMap<>();
+        List<Claim> losers = new ArrayList<>();
+        Set<Integer> undecided = new HashSet<>();
+        synchronized (writeLock) {
+            Index current = index;
+            changes = new HashMap<>(changes);
+            changes.entrySet().removeIf(e -> Objects.equals(current.claim(e.getKey()), e.getValue()));
+            if (changes.isEmpty()) return undecided;
+            Edit edit = new Edit(current);
+            for (Map.Entry<Integer, Claim> e : changes.entrySet()) {
+                Claim old = edit.next.claim(e.getKey());
+                if (old != null) {
+                    edit.delete(old);
+                    touched.merge(old.world(), old.bounds(), Rect::union);
                 }
             }
+            for (Claim c : changes.values()) {
+                if (c == null) continue;
+                List<Claim> overlapping = edit.next.claimsIn(c.world(), c.minX(), c.minZ(), c.maxX(), c.maxZ());
+                if (overlapping.stream().anyMatch(o -> o.id() < c.id() && !busy.contains(o.id()))) {
+                    losers.add(c);
+                    continue;
+                }
+                if (overlapping.stream().anyMatch(o -> o.id() < c.id())) {
+                    undecided.add(c.id());
+                    continue;
+                }
+                for (Claim o : overlapping) {
+                    edit.delete(o);
+                    losers.add(o);
+                    touched.merge(o.world(), o.bounds(), Rect::union);
+                }
+                edit.insert(c);
+                touched.merge(c.world(), c.bounds(), Rect::union);
+            }
+            index = edit.next;
+            if (!losers.isEmpty()) {
+                log.warning("Released " + losers.size() + " claims that overlap claims made on another server at the same time");
+                storage.changed(losers, List.of());
+            }
         }
-        save();
-        return removed;
+        touched.forEach((world, r) -> fireChanged(world, r.minX(), r.minZ(), r.maxX(), r.maxZ()));
+        return undecided;
+    }
+
+    /** Caller holds {@link #writeLock}. */
+    private int newId() {
+        if (nextId > storage.lastId()) throw new IllegalStateException("No claim ids left in this server's range");
+        return nextId++;
+    }
+
+    public void addChangeListener(ChangeListener listener) {
+        listeners.add(listener);
     }
 
+    private void fireChanged(String world, int minX, int minZ, int maxX, int maxZ) {
+        for (ChangeListener l : listeners) l.claimsChanged(world, minX, minZ, maxX, maxZ);
+    }
+
+    /** Trusts the member in the whole claim; one storage record regardless of its size. */
     public boolean addMember(Claim claim, UUID member, TrustLevel level) {
         if (claim == null) return false;
-        String path = claim.world() + "." + chunkKey(claim.chunkX(), claim.chunkZ()) + ".members";
-        List<String> members = cfg.getStringList(path);
-        // remove old entry for same UUID (if any)
-        members.removeIf(s -> s != null && s.startsWith(member.toString()));
-        members.add(member.toString() + ":" + (level == null ? TrustLevel.BUILD.name() : level.name()));
-        cfg.set(path, members);
-        save();
+        TrustLevel lvl = level == null ? TrustLevel.BUILD : level;
+        Claim current;
+        synchronized (writeLock) {
+            current = index.claim(claim.id());
+            if (current == null) return false;
+            // replaces an old entry for the same UUID (if any)
+            Edit edit = new Edit(index);
+            edit.replace(current.withMember(member, lvl));
+            index = edit.next;
+            storage.trusted(current, member, lvl);
+        }
+        fireChanged(current.world(), current.minX(), current.minZ(), current.maxX(), current.maxZ());
         return true;
     }
 
@@ -224,47 +500,286 @@ public class ClaimManager {
 
     public Map<UUID, TrustLevel> getTrustedWithLevels(Claim claim) {
         if (claim == null) return Collections.emptyMap();
-        Claim fresh = getClaimAt(claim.world(), claim.chunkX(), claim.chunkZ());
+        Claim fresh = getClaim(claim.id());
         if (fresh == null) return Collections.emptyMap();
         return fresh.members();
     }
 
     public boolean removeMember(Claim claim, UUID member) {
         if (claim == null) return false;
-        String path = claim.world() + "." + chunkKey(claim.chunkX(), claim.chunkZ()) + ".members";
-        List<String> members = cfg.getStringList(path);
-        boolean removed = members.removeIf(s -> s != null && s.startsWith(member.toString()));
-        if (removed) {
-            cfg.set(path, members);
-            save();
+        Claim current;
+        synchronized (writeLock) {
+            current = index.claim(claim.id());
+            if (current == null || !current.members().containsKey(member)) return false;
+            Edit edit = new Edit(index);
+            edit.replace(current.withoutMember(member));
+            index = edit.next;
+            storage.untrusted(current, member);
         }
-        return removed;
+        fireChanged(current.world(), current.minX(), current.minZ(), current.maxX(), current.maxZ());
+        return true;
     }
 
+    public void forEachClaim(Consumer<Claim> action) {
+        index.claims().forEach(stripe -> stripe.forEach((id, c) -> action.accept(c)));
+    }
+
+    /** All claims of the owner, sorted by world and position. */
     public List<Claim> getClaimsOf(UUID owner) {
-        List<Claim> out = new ArrayList<>();
-        for (String world : cfg.getKeys(false)) {
-            ConfigurationSection worldSec = cfg.getConfigurationSection(world);
-            if (worldSec == null) continue;
-            for (String key : worldSec.getKeys(false)) {
-                Claim c = null;
-                try {
-                    String[] parts = key.split(",");
-                    int x = Integer.parseInt(parts[0]);
-                    int z = Integer.parseInt(parts[1]);
-                    c = getClaimAt(world, x, z);
-                } catch (Exception ignored) {}
-                if (c != null && c.owner().equals(owner)) out.add(c);
-            }
-        }
+        Index idx = index;
+        Set<Integer> ids = idx.owned(owner);
+        if (ids == null) return List.of();
+        List<Claim> out = new ArrayList<>(ids.size());
+        for (int id : ids) out.add(idx.claim(id));
+        out.sort(Comparator.comparing(Claim::world).thenComparingInt(Claim::minX).thenComparingInt(Claim::minZ));
         return out;
     }
 
+    /** Everyone who owns at least one claim, in no particular order. */
+    public List<UUID> getOwners() {
+        List<UUID> owners = new ArrayList<>();
+        index.byOwner().forEach(stripe -> owners.addAll(stripe.keySet()));
+        return owners;
+    }
+
+    /** Number of chunks the owner has claimed. */
+    public int getClaimCount(UUID owner) {
+        Index idx = index;
+        Set<Integer> ids = idx.owned(owner);
+        if (ids == null) return 0;
+        int chunks = 0;
+        for (int id : ids) chunks += idx.claim(id).chunks();
+        return chunks;
+    }
+
+    public Optional<UUID> getOwner(Chunk chunk) {
+        Claim c = getClaimAt(chunk);
+        return c == null ? Optional.empty() : Optional.of(c.owner());
+    }
+
     public static String chunkKey(int x, int z) {
         return x + "," + z;
     }
 
-    public record Claim(String world, int chunkX, int chunkZ, UUID owner, Map<UUID, TrustLevel> members) {
+    // ---- index maintenance ----------------------------------------------------------------
+
+    /**
+     * Immutable once published: readers take the current instance once and use it without
+     * locking.
+     *
+     * @param grids   world -> chunk grid of claim ids
+     * @param claims  claim id -> claim, striped by id
+     * @param byOwner owner -> ids of their claims, striped by owner
+     */
+    private record Index(Map<String, ChunkClaimMap> grids, CopyOnWriteStripes<LongObjectMap<Claim>> claims,
+                         CopyOnWriteStripes<Map<UUID, Set<Integer>>> byOwner) {
+        static Index empty() {
+            return new Index(new HashMap<>(), new CopyOnWriteStripes<>(LongObjectMap::new, LongObjectMap::new),
+                    new CopyOnWriteStripes<>(HashMap::new, HashMap::new));
+        }
+
+        Claim claim(int id) {
+            return claims.read(id).get(id);
+        }
+
+        Set<Integer> owned(UUID owner) {
+            return byOwner.read(owner.hashCode()).get(owner);
+        }
+
+        /** See {@link ClaimManager#getClaimsIn}. */
+        List<Claim> claimsIn(String world, int minX, int minZ, int maxX, int maxZ) {
+            ChunkClaimMap map = grids.get(world);
+            if (map == null || map.size() == 0) return List.of();
+            List<Claim> found = new ArrayList<>();
+            Set<Integer> seen = new HashSet<>();
+            for (int x = minX; x <= maxX; x++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    int id = map.get(x, z);
+                    if (id == 0) continue;
+                    Claim c = claim(id);
+                    if (seen.add(id)) found.add(c);
+                    z = c.maxZ();
+                }
+            }
+            return found;
+        }
+    }
+
+    /**
+     * Builds the next {@link Index} from the current one. Nothing is copied up front: a stripe, a
+     * grid tile or an owner's id set is copied the first time the edit touches it.
+     */
+    private static final class Edit {
+        final Index next;
+        private final Set<String> copiedGrids = new HashSet<>();
+        private final Set<UUID> copiedOwners = new HashSet<>();
+
+        Edit(Index base) {
+            next = new Index(new HashMap<>(base.grids()), new CopyOnWriteStripes<>(base.claims()),
+                    new CopyOnWriteStripes<>(base.byOwner()));
+        }
+
+        void insert(Claim claim) {
+            next.claims().write(claim.id()).put(claim.id(), claim);
+            ChunkClaimMap map = grid(claim.world());
+            for (int x = claim.minX(); x <= claim.maxX(); x++) {
+                for (int z = claim.minZ(); z <= claim.maxZ(); z++) map.put(x, z, claim.id());
+            }
+            owned(claim.owner()).add(claim.id());
+        }
+
+        /** New version of a claim already in the index, with the same chunks and owner. */
+        void replace(Claim claim) {
+            next.claims().write(claim.id()).put(claim.id(), claim);
+        }
+
+        void delete(Claim claim) {
+            next.claims().write(claim.id()).remove(claim.id());
+            ChunkClaimMap map = grid(claim.world());
+            for (int x = claim.minX(); x <= claim.maxX(); x++) {
+                for (int z = claim.minZ(); z <= claim.maxZ(); z++) map.remove(x, z);
+            }
+            Set<Integer> ids = owned(claim.owner());
+            if (ids.remove(claim.id()) && ids.isEmpty()) next.byOwner().write(claim.owner().hashCode()).remove(claim.owner());
+        }
+
+        private ChunkClaimMap grid(String world) {
+            ChunkClaimMap map = next.grids().get(world);
+            if (map == null || copiedGrids.add(world)) {
+                map = map == null ? new ChunkClaimMap() : new ChunkClaimMap(map);
+                copiedGrids.add(world);
+                next.grids().put(world, map);
+            }
+            return map;
+        }
+
+        private Set<Integer> owned(UUID owner) {
+            Map<UUID, Set<Integer>> stripe = next.byOwner().write(owner.hashCode());
+            Set<Integer> ids = stripe.get(owner);
+            if (ids == null || copiedOwners.add(owner)) {
+                ids = ids == null ? new HashSet<>() : new HashSet<>(ids);
+                copiedOwners.add(owner);
+                stripe.put(owner, ids);
+            }
+            return ids;
+        }
+    }
+
+    private static List<Rect> subtractAll(List<Rect> rects, Rect cut) {
+        List<Rect> out = new ArrayList<>(rects.size() + 3);
+        for (Rect r : rects) out.addAll(r.subtract(cut));
+        return out;
+    }
+
+    /**
+     * Called after claims or their members changed, on the thread that changed them (the main
+     * thread on Paper, any region thread on Folia, an async thread for changes made on other
+     * servers), once the change is visible to lookups.
+     * Batch operations report their whole rectangle once.
+     */
+    @FunctionalInterface
+    public interface ChangeListener {
+        void claimsChanged(String world, int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ);
+    }
+
+    public record ChunkPos(int x, int z) {
+        @Override
+        public String toString() {
+            return chunkKey(x, z);
+        }
+    }
+
+    /** Rectangle of chunks, bounds inclusive. */
+    record Rect(int minX, int minZ, int maxX, int maxZ) {
+        int chunks() {
+            return (maxX - minX + 1) * (maxZ - minZ + 1);
+        }
+
+        boolean overlaps(Rect o) {
+            return minX <= o.maxX && o.minX <= maxX && minZ <= o.maxZ && o.minZ <= maxZ;
+        }
+
+        /** Smallest rectangle covering both. */
+        Rect union(Rect o) {
+            return new Rect(Math.min(minX, o.minX), Math.min(minZ, o.minZ), Math.max(maxX, o.maxX), Math.max(maxZ, o.maxZ));
+        }
+
+        /** Callers make sure the rectangles overlap. */
+        Rect intersect(Rect o) {
+            return new Rect(Math.max(minX, o.minX), Math.max(minZ, o.minZ), Math.min(maxX, o.maxX), Math.min(maxZ, o.maxZ));
+        }
+
+        /** This rectangle without the other one: up to four disjoint pieces. */
+        List<Rect> subtract(Rect cut) {
+            if (!overlaps(cut)) return List.of(this);
+            List<Rect> pieces = new ArrayList<>(4);
+            if (minX < cut.minX) pieces.add(new Rect(minX, minZ, cut.minX - 1, maxZ));
+            if (maxX > cut.maxX) pieces.add(new Rect(cut.maxX + 1, minZ, maxX, maxZ));
+            int fromX = Math.max(minX, cut.minX);
+            int toX = Math.min(maxX, cut.maxX);
+            if (minZ < cut.minZ) pieces.add(new Rect(fromX, minZ, toX, cut.minZ - 1));
+            if (maxZ > cut.maxZ) pieces.add(new Rect(fromX, cut.maxZ + 1, toX, maxZ));
+            return pieces;
+        }
+    }
+
+    /**
+     * Outcome of {@link #claimArea}. If {@link #conflicts()} is not empty nothing was claimed.
+     *
+     * @param claimed      chunks newly claimed
+     * @param alreadyOwned chunks in the area the owner already had
+     * @param conflicts    chunks in the area owned by someone else
+     */
+    public record AreaClaimResult(int claimed, int alreadyOwned, List<ChunkPos> conflicts) {
+        public boolean success() {
+            return conflicts.isEmpty();
+        }
+    }
+
+    /**
+     * Immutable snapshot of one claim: the chunks minX..maxX, minZ..maxZ (inclusive) of a world.
+     * Mutations replace the instance in the index; the id stays the same for trust changes and
+     * is what storages refer to.
+     */
+    public record Claim(int id, String world, int minX, int minZ, int maxX, int maxZ,
+                        UUID owner, Map<UUID, TrustLevel> members) {
+        public Claim {
+            members = members.isEmpty() ? Map.of() : Collections.unmodifiableMap(new HashMap<>(members));
+        }
+
+        public int width() {
+            return maxX - minX + 1;
+        }
+
+        public int depth() {
+            return maxZ - minZ + 1;
+        }
+
+        public int chunks() {
+            return width() * depth();
+        }
+
+        public boolean contains(int chunkX, int chunkZ) {
+            return chunkX >= minX && chunkX <= maxX && chunkZ >= minZ && chunkZ <= maxZ;
+        }
+
+        Rect bounds() {
+            return new Rect(minX, minZ, maxX, maxZ);
+        }
+
+        public Claim withMember(UUID member, TrustLevel level) {
+            Map<UUID, TrustLevel> copy = new HashMap<>(members);
+            copy.put(member, level);
+            return new Claim(id, world, minX, minZ, maxX, maxZ, owner, copy);
+        }
+
+        public Claim withoutMember(UUID member) {
+            if (!members.containsKey(member)) return this;
+            Map<UUID, TrustLevel> copy = new HashMap<>(members);
+            copy.remove(member);
+            return new Claim(id, world, minX, minZ, maxX, maxZ, owner, copy);
+        }
+
         public List<String> membersForSave() {
             return members.entrySet().stream()
                     .map(e -> e.getKey().toString() + ":" + e.getValue().name())
@@ -0,0 +1,69 @@
+package de.bonescraft.land;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Persistence backend behind {@link ClaimManager}.
+ *
+ * The claim index is the source of truth while the plugin runs; a storage only has to load it
+ * once and then record each mutation. Implementations decide whether a mutation is written as a
+ * delta (journal, SQL) or just marks a full rewrite as due (YAML). Claims are identified by
+ * {@link ClaimManager.Claim#id()}. A storage shared with other servers also brings their changes
+ * into the index, see {@link #start}.
+ *
+ * Mutations are reported in order while the manager holds its write lock, but not necessarily
+ * on the main thread (region threads on Folia).
+ */
+interface ClaimStorage {
+
+    /** Loads all persisted claims, migrating older formats if necessary. */
+    List<ClaimManager.Claim> load();
+
+    /**
+     * Records one change as a single persistence event. Claiming adds claims, unclaiming removes
+     * them; cutting a piece out of a claim removes it and adds the remaining parts.
+     */
+    void changed(List<ClaimManager.Claim> removed, List<ClaimManager.Claim> added);
+
+    void trusted(ClaimManager.Claim claim, UUID member, TrustLevel level);
+
+    void untrusted(ClaimManager.Claim claim, UUID member);
+
+    /** Writes everything still pending; called from onDisable. */
+    void close();
+
+    /**
+     * Called once the manager has loaded; a storage shared with other servers starts applying
+     * their changes here (see {@link ClaimManager#applyRemote}).
+     */
+    default void start(ClaimManager manager) {
+    }
+
+    /** First id the manager may give a new claim; servers sharing a storage get separate ranges. */
+    default int firstId() {
+        return 1;
+    }
+
+    /** Last id the manager may give a new claim. */
+    default int lastId() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Creates the backend selected by {@code storage-type} in config.yml.
+     *
+     * @param snapshot returns the current claims; safe to call from any thread
+     */
+    static ClaimStorage create(BonescraftLand plugin, Supplier<List<ClaimManager.Claim>> snapshot) {
+        String type = plugin.getConfig().getString("storage-type", "yaml");
+        if ("journal".equalsIgnoreCase(type)) {
+            return new JournalClaimStorage(plugin, snapshot);
+        }
+        if ("sql".equalsIgnoreCase(type)) {
+            return new SqlClaimStorage(plugin, snapshot);
+        }
+        return new YamlClaimStorage(plugin, snapshot);
+    }
+}
@@ -0,0 +1,303 @@
+package de.bonescraft.land;
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+/**
+ * {@code /land admin export|import <file>}: claims as CSV under {@code transfer/}, one claim per
+ * line: {@code world,minX,minZ,maxX,maxZ,owner,members}, chunk coordinates inclusive and members
+ * as {@code uuid:LEVEL} separated by {@code ;}. Blank lines and lines starting with {@code #} are
+ * ignored, so other plugins' claims can be converted with a script and restored the same way as
+ * a backup.
+ *
+ * Export streams the current claim index (an immutable snapshot) to the file on an async thread.
+ * Import reads the file on an async thread into batches of at most {@code import-chunks-per-tick}
+ * chunks, and a main-thread task (the global region on Folia) adds one batch every tick through
+ * {@link ClaimManager#addClaims}. At most {@value #QUEUED_BATCHES} batches wait in between, so
+ * neither the file nor the parsed claims are ever held in memory as a whole. A batch only copies
+ * the parts of the claim index it touches, so its cost on the tick depends on the batch size,
+ * not on how many claims the server already has. Imported claims get new ids; lines overlapping
+ * a claim that already exists are skipped and counted. One transfer runs at a time.
+ */
+final class ClaimTransfer {
+    private static final String HEADER = "# BonescraftLand claims: world,minX,minZ,maxX,maxZ,owner,members (uuid:LEVEL;...)";
+    private static final Pattern FILE_NAME = Pattern.compile("[A-Za-z0-9._-]+");
+    private static final int QUEUED_BATCHES = 4;
+    private static final long PROGRESS_MS = 5000;
+    private static final int MAX_REPORTED_ERRORS = 5;
+
+    private final BonescraftLand plugin;
+    private final ClaimManager claims;
+    private final File dir;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean closed;
+    private volatile ScheduledTask applier;
+
+    ClaimTransfer(BonescraftLand plugin, ClaimManager claims) {
+        this.plugin = plugin;
+        this.claims = claims;
+        this.dir = new File(plugin.getDataFolder(), "transfer");
+    }
+
+    /** Stops a running import; batches not applied yet are dropped. */
+    void close() {
+        closed = true;
+        ScheduledTask task = applier;
+        if (task != null) task.cancel();
+    }
+
+    void export(CommandSender sender, String name) {
+        Path file = file(sender, name);
+        if (file == null || !start(sender)) return;
+        sender.sendMessage("§7Exporting claims to transfer/" + file.getFileName() + "...");
+        Bukkit.getAsyncScheduler().runNow(plugin, t -> {
+            try {
+                Files.createDirectories(dir.toPath());
+                Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+                int[] written = new int[2];
+                long[] lastReport = {System.currentTimeMillis()};
+                try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                    out.write(HEADER);
+                    out.newLine();
+                    IOException[] failure = new IOException[1];
+                    claims.forEachClaim(c -> {
+                        if (failure[0] != null || closed) return;
+                        try {
+                            out.write(format(c));
+                            out.newLine();
+                        } catch (IOException e) {
+                            failure[0] = e;
+                            return;
+                        }
+                        written[0]++;
+                        written[1] += c.chunks();
+                        long now = System.currentTimeMillis();
+                        if (now - lastReport[0] >= PROGRESS_MS) {
+                            lastReport[0] = now;
+                            report(sender, "§7Exported " + written[0] + " claims so far...");
+                        }
+                    });
+                    if (failure[0] != null) throw failure[0];
+                }
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                report(sender, "§aExported " + written[0] + " claims (" + written[1] + " chunks) to transfer/" + file.getFileName() + ".");
+            } catch (IOException e) {
+                report(sender, "§cExport failed: " + e.getMessage());
+                plugin.getLogger().severe("Could not export claims to " + file + ": " + e.getMessage());
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    void importFile(CommandSender sender, String name) {
+        Path file = file(sender, name);
+        if (file == null) return;
+        if (!Files.isRegularFile(file)) {
+            sender.sendMessage("§cNo such file: transfer/" + file.getFileName());
+            return;
+        }
+        if (!start(sender)) return;
+        int perTick = Math.max(1, plugin.getConfig().getInt("import-chunks-per-tick", 2000));
+        Job job = new Job(sender);
+        sender.sendMessage("§7Importing claims from transfer/" + file.getFileName() + "...");
+        Bukkit.getAsyncScheduler().runNow(plugin, t -> read(job, file, perTick));
+        applier = Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin, t -> apply(job, t), 1, 1);
+    }
+
+    /** One import: the reader thread fills the queue, the applier task drains it. */
+    private static final class Job {
+        final CommandSender sender;
+        final BlockingQueue<List<ClaimManager.Claim>> batches = new ArrayBlockingQueue<>(QUEUED_BATCHES);
+        /** Set by the reader once everything is queued, or it gave up. */
+        volatile boolean readDone;
+        volatile String readError;
+        volatile int lines;
+        volatile int invalid;
+        int added;
+        int addedChunks;
+        int skipped;
+        long lastReport = System.currentTimeMillis();
+
+        Job(CommandSender sender) {
+            this.sender = sender;
+        }
+    }
+
+    // ---- import ---------------------------------------------------------------------------
+
+    /** Runs on an async thread. */
+    private void read(Job job, Path file, int perTick) {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            Map<String, String> worlds = new HashMap<>();
+            List<ClaimManager.Claim> batch = new ArrayList<>();
+            int chunks = 0;
+            int lineNo = 0;
+            for (String line; (line = in.readLine()) != null; ) {
+                lineNo++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                ClaimManager.Claim c;
+                try {
+                    c = parse(line, worlds);
+                } catch (IllegalArgumentException e) {
+                    if (job.invalid++ < MAX_REPORTED_ERRORS) report(job.sender, "§cLine " + lineNo + ": " + e.getMessage());
+                    continue;
+                }
+                if (!batch.isEmpty() && chunks + c.chunks() > perTick) {
+                    if (!queue(job, batch)) return;
+                    batch = new ArrayList<>();
+                    chunks = 0;
+                }
+                batch.add(c);
+                chunks += c.chunks();
+                job.lines = lineNo;
+            }
+            if (!batch.isEmpty()) queue(job, batch);
+        } catch (IOException e) {
+            job.readError = e.getMessage();
+        } finally {
+            job.readDone = true;
+        }
+    }
+
+    /** Waits for room in the queue. @return false if the plugin is shutting down */
+    private boolean queue(Job job, List<ClaimManager.Claim> batch) {
+        try {
+            while (!closed) {
+                if (job.batches.offer(batch, 1, TimeUnit.SECONDS)) return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    /** Runs every tick on the main thread (global region) while the import lasts. */
+    private void apply(Job job, ScheduledTask task) {
+        boolean done = job.readDone; // before polling: nothing is queued after this is set
+        List<ClaimManager.Claim> batch = job.batches.poll();
+        if (batch != null) {
+            List<ClaimManager.Claim> added = claims.addClaims(batch);
+            for (ClaimManager.Claim c : added) job.addedChunks += c.chunks();
+            job.added += added.size();
+            job.skipped += batch.size() - added.size();
+            long now = System.currentTimeMillis();
+            if (now - job.lastReport >= PROGRESS_MS) {
+                job.lastReport = now;
+                report(job.sender, "§7Imported " + job.added + " claims so far (line " + job.lines + ")...");
+            }
+            return;
+        }
+        if (!done) return;
+        task.cancel();
+        applier = null;
+        running.set(false);
+        if (job.readError != null) {
+            report(job.sender, "§cImport stopped, could not read the file: " + job.readError);
+        }
+        report(job.sender, "§aImported " + job.added + " claims (" + job.addedChunks + " chunks)§7, "
+                + job.skipped + " skipped (overlapping), " + job.invalid + " invalid lines.");
+        plugin.getLogger().info("Imported " + job.added + " claims, skipped " + job.skipped + " overlapping and "
+                + job.invalid + " invalid lines");
+    }
+
+    // ---- format ---------------------------------------------------------------------------
+
+    static String format(ClaimManager.Claim c) {
+        StringBuilder sb = new StringBuilder(64 + c.members().size() * 48);
+        sb.append(c.world()).append(',').append(c.minX()).append(',').append(c.minZ())
+                .append(',').append(c.maxX()).append(',').append(c.maxZ()).append(',').append(c.owner()).append(',');
+        boolean first = true;
+        for (Map.Entry<UUID, TrustLevel> e : c.members().entrySet()) {
+            if (!first) sb.append(';');
+            first = false;
+            sb.append(e.getKey()).append(':').append(e.getValue().name());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Parses one line. The world is everything before the last six fields, so world names
+     * containing commas survive a round trip.
+     *
+     * @param worlds interns world names, so a large import keeps one copy of each
+     * @throws IllegalArgumentException if the line is malformed
+     */
+    static ClaimManager.Claim parse(String line, Map<String, String> worlds) {
+        String[] f = line.split(",", -1);
+        if (f.length < 7) throw new IllegalArgumentException("expected world,minX,minZ,maxX,maxZ,owner,members");
+        int n = f.length;
+        String world = n == 7 ? f[0] : String.join(",", Arrays.copyOf(f, n - 6));
+        if (world.isEmpty()) throw new IllegalArgumentException("missing world");
+        world = worlds.computeIfAbsent(world, w -> w);
+        int minX, minZ, maxX, maxZ;
+        UUID owner;
+        try {
+            minX = Integer.parseInt(f[n - 6].trim());
+            minZ = Integer.parseInt(f[n - 5].trim());
+            maxX = Integer.parseInt(f[n - 4].trim());
+            maxZ = Integer.parseInt(f[n - 3].trim());
+            owner = UUID.fromString(f[n - 2].trim());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("invalid coordinates or owner");
+        }
+        if (minX > maxX || minZ > maxZ) throw new IllegalArgumentException("min is greater than max");
+        Map<UUID, TrustLevel> members = new HashMap<>();
+        for (String m : f[n - 1].split(";")) {
+            m = m.trim();
+            if (m.isEmpty()) continue;
+            String[] parts = m.split(":");
+            try {
+                members.put(UUID.fromString(parts[0]), parts.length == 2 ? TrustLevel.parse(parts[1]) : TrustLevel.BUILD);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("invalid member " + m);
+            }
+        }
+        return new ClaimManager.Claim(0, world, minX, minZ, maxX, maxZ, owner, members);
+    }
+
+    // ---- helpers --------------------------------------------------------------------------
+
+    private boolean start(CommandSender sender) {
+        if (running.compareAndSet(false, true)) return true;
+        sender.sendMessage("§cAn import or export is already running.");
+        return false;
+    }
+
+    /** @return the file in transfer/, or null (with a message) for names that leave it */
+    private Path file(CommandSender sender, String name) {
+        if (!FILE_NAME.matcher(name).matches() || name.startsWith(".")) {
+            sender.sendMessage("§cInvalid file name (letters, digits, '.', '-' and '_' only).");
+            return null;
+        }
+        if (name.indexOf('.') < 0) name += ".csv";
+        return dir.toPath().resolve(name);
+    }
+
+    /** Sends a message on the main thread; callable from any thread. */
+    private void report(CommandSender sender, String message) {
+        Bukkit.getGlobalRegionScheduler().execute(plugin, () -> sender.sendMessage(message));
+    }
+}
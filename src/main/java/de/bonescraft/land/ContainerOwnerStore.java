@@ -1,80 +1,332 @@
 package de.bonescraft.land;
 
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
 import org.bukkit.Location;
-import org.bukkit.Material;
+import org.bukkit.World;
 import org.bukkit.block.Block;
-import org.bukkit.block.Container;
-import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Optional;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers who placed each container.
+ *
+ * Owners are sharded per chunk ({@link ContainerShard}) and persisted in per-region files under
+ * {@code containers/<world>/} ({@link ContainerRegionFile}). Only shards of loaded chunks are kept
+ * in memory: a shard is read on {@link ChunkLoadEvent} and dropped on {@link ChunkUnloadEvent}
+ * once its changes are on disk. Dirty shards are written in the background every
+ * {@code save-interval-seconds}.
+ *
+ * Reads run on the writer thread too, after any write queued before them, so chunk loads never
+ * wait for the disk. Until a chunk's read is done its owners are {@link #PENDING}; placing or
+ * breaking containers there meanwhile is recorded and kept over what the read brings.
+ *
+ * A lookup is a world lookup, a primitive-keyed probe and a binary search, with no string
+ * building, allocation or locking: shards of loaded chunks sit in a {@link StripedLongObjectMap}
+ * and each shard publishes its contents copy-on-write, so protection checks on any region thread
+ * (Folia) read without blocking each other or chunk loads elsewhere.
+ */
+public class ContainerOwnerStore implements Listener {
+    /**
+     * Owner of containers in a chunk whose owners are still being read, shortly after it loaded.
+     * Never a player's id, so nobody counts as owner until the read is done.
+     */
+    public static final UUID PENDING = new UUID(0, 0);
 
-public class ContainerOwnerStore {
     private final BonescraftLand plugin;
-    private final File file;
-    private YamlConfiguration cfg;
+    private final File dir;
+    private final Map<String, WorldShards> worlds = new ConcurrentHashMap<>();
+    private final Map<UUID, UUID> uuidPool = new ConcurrentHashMap<>();
+    private final ExecutorService io;
+    private ScheduledTask flushTask;
 
     public ContainerOwnerStore(BonescraftLand plugin) {
+        this(plugin, new File(plugin.getDataFolder(), "containers"));
+        if (!dir.isDirectory()) importLegacy();
+        for (World world : Bukkit.getWorlds()) {
+            for (Chunk chunk : world.getLoadedChunks()) loadShard(world.getName(), chunk.getX(), chunk.getZ());
+        }
+        long ticks = Math.max(1, plugin.getConfig().getInt("save-interval-seconds", 5)) * 20L;
+        this.flushTask = Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin, t -> flush(false), ticks, ticks);
+    }
+
+    /**
+     * Bare store on the given directory: no legacy import, no preloading of loaded chunks and no
+     * flush timer. Used by the benchmarks, which run without a server.
+     */
+    ContainerOwnerStore(BonescraftLand plugin, File dir) {
         this.plugin = plugin;
-        this.file = new File(plugin.getDataFolder(), "container_owners.yml");
-        reload();
+        this.dir = dir;
+        this.io = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "BonescraftLand-containers");
+            t.setDaemon(true);
+            return t;
+        });
     }
 
-    public void reload() {
-        if (!file.exists()) {
-            file.getParentFile().mkdirs();
-            try {
-                file.createNewFile();
-            } catch (IOException ignored) {}
+    /**
+     * Writes all pending changes synchronously and stops the background writer.
+     */
+    public void close() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        io.shutdown();
+        try {
+            if (!io.awaitTermination(30, TimeUnit.SECONDS)) {
+                plugin.getLogger().warning("Timed out waiting for pending container writes");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush(true);
+    }
+
+    public static boolean isTrackableContainer(Block block) {
+        return block != null && BlockClasses.isContainer(block.getType());
+    }
+
+    /**
+     * @return the UUID of the player who placed the container, null if unknown, or
+     *         {@link #PENDING} if the chunk's owners are still being read
+     */
+    public UUID getOwner(Location loc) {
+        World world = loc.getWorld();
+        if (world == null) return null;
+        WorldShards shards = worlds.get(world.getName());
+        if (shards == null) return null;
+        int x = loc.getBlockX();
+        int z = loc.getBlockZ();
+        ContainerShard shard = shards.loaded().get(ChunkClaimMap.pack(x >> 4, z >> 4));
+        return shard == null ? null : shard.get(ContainerShard.blockKey(x, loc.getBlockY(), z));
+    }
+
+    public void setOwner(Location loc, UUID uuid) {
+        World world = loc.getWorld();
+        if (world == null) return;
+        int x = loc.getBlockX();
+        int z = loc.getBlockZ();
+        ContainerShard shard = loadShard(world.getName(), x >> 4, z >> 4);
+        shard.put(ContainerShard.blockKey(x, loc.getBlockY(), z), intern(uuid));
+    }
+
+    public void removeOwner(Location loc) {
+        World world = loc.getWorld();
+        if (world == null) return;
+        WorldShards shards = worlds.get(world.getName());
+        if (shards == null) return;
+        int x = loc.getBlockX();
+        int z = loc.getBlockZ();
+        ContainerShard shard = shards.loaded().get(ChunkClaimMap.pack(x >> 4, z >> 4));
+        if (shard != null) shard.remove(ContainerShard.blockKey(x, loc.getBlockY(), z));
+    }
+
+    // ---- chunk lifecycle ------------------------------------------------------------------
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onChunkLoad(ChunkLoadEvent e) {
+        if (e.isNewChunk()) return; // freshly generated chunks have no placed containers
+        Chunk c = e.getChunk();
+        loadShard(e.getWorld().getName(), c.getX(), c.getZ());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent e) {
+        WorldShards shards = worlds.get(e.getWorld().getName());
+        if (shards == null) return;
+        long key = ChunkClaimMap.pack(e.getChunk().getX(), e.getChunk().getZ());
+        ContainerShard shard = shards.loaded().remove(key);
+        if (shard == null || shard.isPersisted()) return;
+        shards.unsaved().put(key, shard);
+        // A write may have completed meanwhile without seeing the shard in unsaved
+        if (shard.isPersisted()) shards.unsaved().remove(key, shard);
+    }
+
+    /**
+     * @return the chunk's shard: from memory, or a {@link ContainerShard#loading() loading} one
+     *         whose read is queued on the writer thread
+     */
+    private ContainerShard loadShard(String world, int chunkX, int chunkZ) {
+        WorldShards shards = world(world);
+        long key = ChunkClaimMap.pack(chunkX, chunkZ);
+        ContainerShard shard = shards.loaded().get(key);
+        if (shard != null) return shard;
+        shard = shards.unsaved().remove(key);
+        boolean read = shard == null;
+        if (read) shard = ContainerShard.loading();
+        // Another thread may have loaded or created the shard meanwhile; keep the first one
+        ContainerShard raced = shards.loaded().putIfAbsent(key, shard);
+        if (raced != null) return raced;
+        if (read) {
+            ContainerShard loading = shard;
+            io.execute(() -> loading.loaded(readShard(world, chunkX, chunkZ)));
         }
-        this.cfg = YamlConfiguration.loadConfiguration(file);
+        return shard;
     }
 
-    public void save() {
+    /** Runs on the writer thread; an unreadable shard is treated as empty, as before. */
+    private ContainerShard readShard(String world, int chunkX, int chunkZ) {
         try {
-            cfg.save(file);
+            return ContainerRegionFile.read(regionFile(world, chunkX, chunkZ),
+                    ContainerRegionFile.slot(chunkX, chunkZ), this::intern);
         } catch (IOException e) {
-            plugin.getLogger().warning("Could not save container_owners.yml: " + e.getMessage());
+            plugin.getLogger().severe("Could not read container owners for chunk " + chunkX + "," + chunkZ
+                    + " in " + world + ": " + e.getMessage());
+            return null;
         }
     }
 
-    public static boolean isTrackableContainer(Block block) {
-        if (block == null) return false;
-        if (!(block.getState() instanceof Container)) return false;
-        Material m = block.getType();
-        return switch (m) {
-            case CHEST, TRAPPED_CHEST, BARREL, SHULKER_BOX,
-                    WHITE_SHULKER_BOX, ORANGE_SHULKER_BOX, MAGENTA_SHULKER_BOX, LIGHT_BLUE_SHULKER_BOX,
-                    YELLOW_SHULKER_BOX, LIME_SHULKER_BOX, PINK_SHULKER_BOX, GRAY_SHULKER_BOX,
-                    LIGHT_GRAY_SHULKER_BOX, CYAN_SHULKER_BOX, PURPLE_SHULKER_BOX, BLUE_SHULKER_BOX,
-                    BROWN_SHULKER_BOX, GREEN_SHULKER_BOX, RED_SHULKER_BOX, BLACK_SHULKER_BOX,
-                    HOPPER, DISPENSER, DROPPER, FURNACE, BLAST_FURNACE, SMOKER, BREWING_STAND
-                    -> true;
-            default -> true; // any Container
-        };
-    }
-
-    private String key(Location loc) {
-        return loc.getWorld().getName() + ":" + loc.getBlockX() + ":" + loc.getBlockY() + ":" + loc.getBlockZ();
-    }
-
-    public Optional<UUID> getOwner(Location loc) {
-        String s = cfg.getString(key(loc));
-        if (s == null || s.isBlank()) return Optional.empty();
+    // ---- persistence ----------------------------------------------------------------------
+
+    /**
+     * Shards of one world.
+     *
+     * @param loaded  shards of loaded chunks
+     * @param unsaved shards of unloaded chunks whose last change is not on disk yet
+     */
+    private record WorldShards(String name, StripedLongObjectMap<ContainerShard> loaded,
+                               StripedLongObjectMap<ContainerShard> unsaved) {}
+
+    private record PendingWrite(WorldShards world, long chunkKey, ContainerShard shard, int modCount, File region) {}
+
+    /**
+     * Hands every changed shard to the writer thread, grouped by region file.
+     *
+     * @param sync write on the calling thread (shutdown) instead of the writer thread
+     */
+    private void flush(boolean sync) {
+        List<PendingWrite> batch = new ArrayList<>();
+        Map<File, Map<Integer, byte[]>> regions = new HashMap<>();
+        for (WorldShards shards : worlds.values()) {
+            collect(shards, shards.loaded(), sync, batch, regions);
+            collect(shards, shards.unsaved(), sync, batch, regions);
+        }
+        if (batch.isEmpty()) return;
+        if (sync) {
+            afterFlush(batch, writeRegions(regions));
+            return;
+        }
+        io.execute(() -> {
+            Set<File> failed = writeRegions(regions);
+            if (plugin.isEnabled()) Bukkit.getGlobalRegionScheduler().execute(plugin, () -> afterFlush(batch, failed));
+        });
+    }
+
+    /**
+     * @param all also include shards whose write is queued but not confirmed (final flush)
+     */
+    private void collect(WorldShards world, StripedLongObjectMap<ContainerShard> shards, boolean all,
+                         List<PendingWrite> batch, Map<File, Map<Integer, byte[]>> regions) {
+        shards.forEach((key, shard) -> {
+            // A shard still being read would overwrite the stored owners it does not have yet
+            if (shard.isLoading() || (all ? shard.isPersisted() : !shard.needsWrite())) return;
+            int cx = ChunkClaimMap.unpackX(key);
+            int cz = ChunkClaimMap.unpackZ(key);
+            File region = regionFile(world.name(), cx, cz);
+            // Read the count before encoding: a change in between is written again next time
+            int modCount = shard.modCount();
+            regions.computeIfAbsent(region, f -> new HashMap<>()).put(ContainerRegionFile.slot(cx, cz), shard.encode());
+            shard.queuedModCount = modCount;
+            batch.add(new PendingWrite(world, key, shard, modCount, region));
+        });
+    }
+
+    private Set<File> writeRegions(Map<File, Map<Integer, byte[]>> regions) {
+        Set<File> failed = new HashSet<>();
+        Metrics.SaveStats stats = Metrics.of(plugin).save("containers");
+        for (Map.Entry<File, Map<Integer, byte[]>> e : regions.entrySet()) {
+            long start = System.nanoTime();
+            try {
+                stats.success(start, ContainerRegionFile.write(e.getKey(), e.getValue()));
+            } catch (IOException ex) {
+                stats.failure();
+                failed.add(e.getKey());
+                plugin.getLogger().severe("Could not save " + e.getKey().getPath() + ": " + ex.getMessage());
+            }
+        }
+        return failed;
+    }
+
+    private void afterFlush(List<PendingWrite> batch, Set<File> failed) {
+        for (PendingWrite w : batch) {
+            ContainerShard shard = w.shard();
+            if (failed.contains(w.region())) {
+                // Queue it again with the next flush
+                if (shard.queuedModCount == w.modCount()) shard.queuedModCount = shard.savedModCount;
+                continue;
+            }
+            shard.savedModCount = Math.max(shard.savedModCount, w.modCount());
+            if (shard.isPersisted()) w.world().unsaved().remove(w.chunkKey(), shard);
+        }
+    }
+
+    private void importLegacy() {
+        if (!LegacyContainerImport.exists(plugin)) {
+            dir.mkdirs();
+            return;
+        }
+        Map<String, UUID> legacy = new HashMap<>();
         try {
-            return Optional.of(UUID.fromString(s));
-        } catch (IllegalArgumentException e) {
-            return Optional.empty();
+            LegacyContainerImport.read(plugin, legacy);
+        } catch (IOException e) {
+            plugin.getLogger().severe("Could not read old container owner data, not importing: " + e.getMessage());
+            return;
+        }
+        int imported = 0;
+        for (Map.Entry<String, UUID> e : legacy.entrySet()) {
+            // "world:x:y:z" - split from the right in case the world name contains ':'
+            String key = e.getKey();
+            int c3 = key.lastIndexOf(':');
+            int c2 = key.lastIndexOf(':', c3 - 1);
+            int c1 = key.lastIndexOf(':', c2 - 1);
+            if (c1 <= 0) continue;
+            try {
+                int x = Integer.parseInt(key.substring(c1 + 1, c2));
+                int y = Integer.parseInt(key.substring(c2 + 1, c3));
+                int z = Integer.parseInt(key.substring(c3 + 1));
+                // Nothing to read yet: containers/ does not exist before the import
+                long chunk = ChunkClaimMap.pack(x >> 4, z >> 4);
+                StripedLongObjectMap<ContainerShard> loaded = world(key.substring(0, c1)).loaded();
+                ContainerShard shard = loaded.get(chunk);
+                if (shard == null) {
+                    shard = new ContainerShard();
+                    loaded.put(chunk, shard);
+                }
+                shard.put(ContainerShard.blockKey(x, y, z), intern(e.getValue()));
+                imported++;
+            } catch (NumberFormatException ignored) {}
         }
+        flush(true);
+        for (WorldShards shards : worlds.values()) shards.loaded().clear();
+        dir.mkdirs();
+        plugin.getLogger().info("Imported " + imported + " container owners into " + dir.getName() + "/");
     }
 
-    public void setOwner(Location loc, UUID uuid) {
-        cfg.set(key(loc), uuid.toString());
+    private File regionFile(String world, int chunkX, int chunkZ) {
+        return new File(new File(dir, world), ContainerRegionFile.fileName(chunkX, chunkZ));
+    }
+
+    private WorldShards world(String world) {
+        WorldShards shards = worlds.get(world);
+        if (shards != null) return shards;
+        return worlds.computeIfAbsent(world, w -> new WorldShards(w, new StripedLongObjectMap<>(), new StripedLongObjectMap<>()));
     }
 
-    public void remove(Location loc) {
-        cfg.set(key(loc), null);
+    private UUID intern(UUID id) {
+        UUID known = uuidPool.putIfAbsent(id, id);
+        return known == null ? id : known;
     }
 }
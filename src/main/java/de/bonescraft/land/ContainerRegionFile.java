@@ -0,0 +1,104 @@
+package de.bonescraft.land;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * On-disk format for container shards: one file per 32x32 chunk region, like Minecraft's own
+ * region files.
+ *
+ * Layout: {@code int magic, int version, int[1024] offsets, int[1024] lengths, data...}. A chunk
+ * slot with offset 0 is empty. Reading one chunk is two small header reads plus one data read;
+ * writing replaces the whole (small) file atomically.
+ */
+final class ContainerRegionFile {
+    private static final int MAGIC = 0x42435247; // "BCRG"
+    private static final int VERSION = 1;
+    private static final int SLOTS = 1024;
+    private static final int HEADER = 8 + SLOTS * 8;
+
+    private ContainerRegionFile() {}
+
+    static String fileName(int chunkX, int chunkZ) {
+        return "r." + (chunkX >> 5) + "." + (chunkZ >> 5) + ".bin";
+    }
+
+    static int slot(int chunkX, int chunkZ) {
+        return ((chunkX & 31) << 5) | (chunkZ & 31);
+    }
+
+    /**
+     * @return the chunk's shard, or null if the file or the slot is empty
+     */
+    static ContainerShard read(File file, int slot, Function<UUID, UUID> interner) throws IOException {
+        if (!file.isFile()) return null;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() < HEADER || raf.readInt() != MAGIC || raf.readInt() != VERSION) {
+                throw new IOException(file.getName() + " is not a container region file");
+            }
+            raf.seek(8 + slot * 4L);
+            int offset = raf.readInt();
+            if (offset == 0) return null;
+            raf.seek(8 + SLOTS * 4L + slot * 4L);
+            int length = raf.readInt();
+            byte[] data = new byte[length];
+            raf.seek(offset);
+            raf.readFully(data);
+            return ContainerShard.decode(new DataInputStream(new ByteArrayInputStream(data)), interner);
+        }
+    }
+
+    /**
+     * Rewrites the region file with new data for the given slots; all other slots are copied from
+     * the existing file. An empty array clears a slot. Runs on the writer thread.
+     *
+     * @return bytes written; 0 if the file was deleted because every slot is empty
+     */
+    static int write(File file, Map<Integer, byte[]> changed) throws IOException {
+        byte[] old = file.isFile() ? Files.readAllBytes(file.toPath()) : null;
+        DataInputStream oldHeader = old == null || old.length < HEADER
+                ? null : new DataInputStream(new ByteArrayInputStream(old, 8, SLOTS * 8));
+        int[] oldOffsets = new int[SLOTS];
+        int[] oldLengths = new int[SLOTS];
+        if (oldHeader != null) {
+            for (int i = 0; i < SLOTS; i++) oldOffsets[i] = oldHeader.readInt();
+            for (int i = 0; i < SLOTS; i++) oldLengths[i] = oldHeader.readInt();
+        }
+
+        int[] offsets = new int[SLOTS];
+        int[] lengths = new int[SLOTS];
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (int i = 0; i < SLOTS; i++) {
+            byte[] data = changed.get(i);
+            if (data != null) {
+                if (data.length == 0) continue;
+                offsets[i] = HEADER + body.size();
+                lengths[i] = data.length;
+                body.write(data);
+            } else if (oldOffsets[i] != 0) {
+                offsets[i] = HEADER + body.size();
+                lengths[i] = oldLengths[i];
+                body.write(old, oldOffsets[i], oldLengths[i]);
+            }
+        }
+
+        if (body.size() == 0) {
+            Files.deleteIfExists(file.toPath());
+            return 0;
+        }
+        file.getParentFile().mkdirs();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER + body.size());
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        for (int o : offsets) out.writeInt(o);
+        for (int l : lengths) out.writeInt(l);
+        body.writeTo(out);
+        out.flush();
+        WriteBehindWriter.writeAtomically(file.toPath(), bytes.toByteArray());
+        return bytes.size();
+    }
+}
@@ -0,0 +1,196 @@
+package de.bonescraft.land;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Container owners of one chunk. Blocks are keyed by their position inside the chunk
+ * (see {@link #blockKey(int, int, int)}) in a sorted int array, so lookups are a binary search
+ * without allocation.
+ *
+ * The arrays are never modified in place: a change builds new ones and publishes them together
+ * with the new modCount, so lookups and the region writer read a consistent state without
+ * locking while changes are serialized on the shard. A chunk holds a handful of containers, so
+ * copying on a placement or break costs next to nothing.
+ *
+ * A shard created with {@link #loading()} stands in for one that is still being read from disk.
+ * It takes changes right away and answers {@link ContainerOwnerStore#PENDING} for blocks it
+ * does not know yet; {@link #loaded} then merges the stored owners under those changes.
+ */
+final class ContainerShard {
+    private static final Entries EMPTY = new Entries(new int[0], new UUID[0], 0);
+
+    private volatile Entries entries = EMPTY;
+    /** Keys changed while the shard was being read; null once it has been read. */
+    private volatile Set<Integer> loading;
+    /** modCount of the last state handed to the region writer. */
+    volatile int queuedModCount;
+    /** modCount of the last state known to be on disk. */
+    volatile int savedModCount;
+
+    /** @param modCount incremented on every change */
+    private record Entries(int[] keys, UUID[] owners, int modCount) {}
+
+    /** Packs a block position into a key that is unique within its chunk. */
+    static int blockKey(int x, int y, int z) {
+        return (y << 8) | ((x & 15) << 4) | (z & 15);
+    }
+
+    /** A shard for a chunk whose stored owners are still being read. */
+    static ContainerShard loading() {
+        ContainerShard shard = new ContainerShard();
+        shard.loading = ConcurrentHashMap.newKeySet();
+        return shard;
+    }
+
+    boolean isLoading() {
+        return loading != null;
+    }
+
+    int size() {
+        return entries.keys().length;
+    }
+
+    int modCount() {
+        return entries.modCount();
+    }
+
+    /** @return the owner, null if there is none, or {@link ContainerOwnerStore#PENDING} while loading */
+    UUID get(int key) {
+        // Read loading first: once it is null, entries holds the stored owners
+        Set<Integer> changed = loading;
+        Entries e = entries;
+        int i = Arrays.binarySearch(e.keys(), key);
+        if (i >= 0) return e.owners()[i];
+        return changed == null || changed.contains(key) ? null : ContainerOwnerStore.PENDING;
+    }
+
+    /** @return true if the stored owner changed */
+    synchronized boolean put(int key, UUID owner) {
+        if (loading != null) loading.add(key);
+        Entries e = entries;
+        int i = Arrays.binarySearch(e.keys(), key);
+        int[] keys;
+        UUID[] owners;
+        if (i >= 0) {
+            if (e.owners()[i].equals(owner)) return false;
+            keys = e.keys();
+            owners = e.owners().clone();
+        } else {
+            i = -i - 1;
+            int size = e.keys().length;
+            keys = new int[size + 1];
+            owners = new UUID[size + 1];
+            System.arraycopy(e.keys(), 0, keys, 0, i);
+            System.arraycopy(e.owners(), 0, owners, 0, i);
+            System.arraycopy(e.keys(), i, keys, i + 1, size - i);
+            System.arraycopy(e.owners(), i, owners, i + 1, size - i);
+            keys[i] = key;
+        }
+        owners[i] = owner;
+        entries = new Entries(keys, owners, e.modCount() + 1);
+        return true;
+    }
+
+    synchronized boolean remove(int key) {
+        if (loading != null) loading.add(key);
+        Entries e = entries;
+        int i = Arrays.binarySearch(e.keys(), key);
+        if (i < 0) return false;
+        int size = e.keys().length - 1;
+        int[] keys = new int[size];
+        UUID[] owners = new UUID[size];
+        System.arraycopy(e.keys(), 0, keys, 0, i);
+        System.arraycopy(e.owners(), 0, owners, 0, i);
+        System.arraycopy(e.keys(), i + 1, keys, i, size - i);
+        System.arraycopy(e.owners(), i + 1, owners, i, size - i);
+        entries = new Entries(keys, owners, e.modCount() + 1);
+        return true;
+    }
+
+    /**
+     * Ends loading: adds the stored owners of blocks that were not changed meanwhile.
+     *
+     * @param stored the shard read from disk, or null if there was none
+     */
+    synchronized void loaded(ContainerShard stored) {
+        Set<Integer> changed = loading;
+        if (changed == null) return;
+        if (stored != null) {
+            Entries e = entries;
+            Entries s = stored.entries;
+            int size = e.keys().length + s.keys().length;
+            int[] keys = new int[size];
+            UUID[] owners = new UUID[size];
+            // Both sorted, and disjoint once changed keys are skipped: every key in e was changed
+            int n = 0;
+            int i = 0;
+            for (int j = 0; j < s.keys().length; j++) {
+                int key = s.keys()[j];
+                if (changed.contains(key)) continue;
+                for (; i < e.keys().length && e.keys()[i] < key; i++, n++) {
+                    keys[n] = e.keys()[i];
+                    owners[n] = e.owners()[i];
+                }
+                keys[n] = key;
+                owners[n++] = s.owners()[j];
+            }
+            for (; i < e.keys().length; i++, n++) {
+                keys[n] = e.keys()[i];
+                owners[n] = e.owners()[i];
+            }
+            // Unchanged shards keep modCount 0 and count as saved
+            entries = new Entries(Arrays.copyOf(keys, n), Arrays.copyOf(owners, n), e.modCount());
+        }
+        loading = null;
+    }
+
+    /** Changed since it was last handed to the region writer. */
+    boolean needsWrite() {
+        return modCount() != queuedModCount;
+    }
+
+    /** The current state is on disk, so the shard can be dropped from memory. */
+    boolean isPersisted() {
+        return modCount() == savedModCount;
+    }
+
+    /** Serializes the shard; an empty shard encodes to an empty array. */
+    byte[] encode() {
+        Entries e = entries;
+        int size = e.keys().length;
+        if (size == 0) return new byte[0];
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4 + size * 20);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                out.writeInt(e.keys()[i]);
+                out.writeLong(e.owners()[i].getMostSignificantBits());
+                out.writeLong(e.owners()[i].getLeastSignificantBits());
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex); // ByteArrayOutputStream does not throw
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param interner shares UUID instances between shards
+     */
+    static ContainerShard decode(DataInputStream in, Function<UUID, UUID> interner) throws IOException {
+        int n = in.readInt();
+        int[] keys = new int[n];
+        UUID[] owners = new UUID[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = in.readInt();
+            owners[i] = interner.apply(new UUID(in.readLong(), in.readLong()));
+        }
+        ContainerShard shard = new ContainerShard();
+        shard.entries = new Entries(keys, owners, 0);
+        return shard;
+    }
+}
@@ -0,0 +1,67 @@
+package de.bonescraft.land;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * A map split into 64 stripes by key hash, for snapshots that are replaced rather than changed,
+ * such as the claim index. A copy made with {@link #CopyOnWriteStripes(CopyOnWriteStripes)} shares
+ * every stripe and copies one the first time it writes to it, so a change costs the stripes it
+ * touches instead of the whole map. Unlike {@link StripedLongObjectMap} nothing is locked: a copy
+ * is changed by one thread before it is published, and never again once it has been copied.
+ *
+ * @param <M> the map type of a stripe
+ */
+final class CopyOnWriteStripes<M> {
+    private static final int STRIPES = 64;
+
+    private final Object[] stripes;
+    /** Stripes this instance created and may change in place. */
+    private final boolean[] own = new boolean[STRIPES];
+    private final UnaryOperator<M> copy;
+
+    /**
+     * @param empty creates an empty stripe
+     * @param copy  copies a stripe
+     */
+    CopyOnWriteStripes(Supplier<M> empty, UnaryOperator<M> copy) {
+        this.stripes = new Object[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = empty.get();
+            own[i] = true;
+        }
+        this.copy = copy;
+    }
+
+    CopyOnWriteStripes(CopyOnWriteStripes<M> base) {
+        this.stripes = base.stripes.clone();
+        this.copy = base.copy;
+    }
+
+    private static int stripe(int hash) {
+        return (hash * 0x9E3779B9) >>> 26;
+    }
+
+    /** The stripe holding keys with this hash, for reading only. */
+    @SuppressWarnings("unchecked")
+    M read(int hash) {
+        return (M) stripes[stripe(hash)];
+    }
+
+    /** The stripe holding keys with this hash, copied first if it is still shared. */
+    @SuppressWarnings("unchecked")
+    M write(int hash) {
+        int i = stripe(hash);
+        if (!own[i]) {
+            stripes[i] = copy.apply((M) stripes[i]);
+            own[i] = true;
+        }
+        return (M) stripes[i];
+    }
+
+    @SuppressWarnings("unchecked")
+    void forEach(Consumer<? super M> action) {
+        for (Object stripe : stripes) action.accept((M) stripe);
+    }
+}
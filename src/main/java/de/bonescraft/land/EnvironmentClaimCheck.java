@@ -0,0 +1,67 @@
+package de.bonescraft.land;
+
+import org.bukkit.block.Block;
+
+import java.util.List;
+
+/**
+ * Claim border checks for block changes nobody is holding responsible: explosions, fire, fluids
+ * and dispensers.
+ *
+ * The rule is the same for all of them: a claimed chunk may only be changed from land of the same
+ * owner. Wilderness can still be changed by anything, so vanilla behaviour outside claims stays as
+ * it is. A change that stays inside one chunk cannot cross a border and needs no claim lookup,
+ * which is the case for nearly every fluid and fire update.
+ */
+final class EnvironmentClaimCheck {
+    private EnvironmentClaimCheck() {}
+
+    /**
+     * @return true if something spreading from {@code from} must not change {@code to}
+     */
+    static boolean crossesIntoForeignClaim(ClaimManager claims, Block from, Block to) {
+        int fx = from.getX() >> 4;
+        int fz = from.getZ() >> 4;
+        int tx = to.getX() >> 4;
+        int tz = to.getZ() >> 4;
+        if (fx == tx && fz == tz) return false;
+        String world = to.getWorld().getName();
+        ClaimManager.Claim target = claims.getClaimAt(world, tx, tz);
+        if (target == null || target.contains(fx, fz)) return false;
+        ClaimManager.Claim source = claims.getClaimAt(world, fx, fz);
+        return source == null || !source.owner().equals(target.owner());
+    }
+
+    /**
+     * Removes the blocks an explosion must not destroy: those in claims of another owner than the
+     * chunk the explosion started in. Every chunk in the blast's bounding box is resolved at most
+     * once, and blasts that stay in their own chunk need no lookup at all.
+     */
+    static void filterExplosion(ClaimManager claims, String world, int originX, int originZ, List<Block> blocks) {
+        if (blocks.isEmpty()) return;
+        int ocx = originX >> 4;
+        int ocz = originZ >> 4;
+        int minX = ocx, maxX = ocx;
+        int minZ = ocz, maxZ = ocz;
+        for (int i = 0, n = blocks.size(); i < n; i++) {
+            Block b = blocks.get(i);
+            int cx = b.getX() >> 4;
+            int cz = b.getZ() >> 4;
+            minX = Math.min(minX, cx);
+            maxX = Math.max(maxX, cx);
+            minZ = Math.min(minZ, cz);
+            maxZ = Math.max(maxZ, cz);
+        }
+        if (minX == maxX && minZ == maxZ) return;
+
+        int depth = maxZ - minZ + 1;
+        Object[] owners = new Object[(maxX - minX + 1) * depth];
+        int fromX = minX;
+        int fromZ = minZ;
+        Object source = PistonClaimCheck.owner(claims, world, owners, fromX, fromZ, depth, ocx, ocz);
+        blocks.removeIf(b -> {
+            Object o = PistonClaimCheck.owner(claims, world, owners, fromX, fromZ, depth, b.getX() >> 4, b.getZ() >> 4);
+            return o != PistonClaimCheck.WILDERNESS && o != source;
+        });
+    }
+}
@@ -0,0 +1,76 @@
+package de.bonescraft.land;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides whether hoppers, hopper minecarts and droppers may move items between two inventories:
+ * items must not leave a claim towards the wilderness or land of another owner. Transfers inside
+ * one chunk are always allowed.
+ *
+ * {@code InventoryMoveItemEvent} fires every few ticks per hopper, so decisions are cached per pair
+ * of chunks, keyed by the source chunk and the direction of the destination chunk (hoppers only
+ * reach neighbouring blocks). A decision depends on nothing but the owners of the two chunks, so a
+ * world's cache is dropped whenever claims in it change; a cached transfer costs a world lookup
+ * and one primitive probe.
+ */
+final class ItemTransferCheck implements ClaimManager.ChangeListener {
+    private final ClaimManager claims;
+    private final Map<String, StripedLongObjectMap<Boolean>> decisions = new ConcurrentHashMap<>();
+    private final LongAdder hits;
+    private final LongAdder misses;
+
+    ItemTransferCheck(ClaimManager claims, Metrics metrics) {
+        this.claims = claims;
+        this.hits = metrics.transferHits;
+        this.misses = metrics.transferMisses;
+    }
+
+    boolean isAllowed(Location from, Location to) {
+        World world = from.getWorld();
+        if (world == null || to.getWorld() != world) return true;
+        int fx = from.getBlockX() >> 4;
+        int fz = from.getBlockZ() >> 4;
+        int tx = to.getBlockX() >> 4;
+        int tz = to.getBlockZ() >> 4;
+        if (fx == tx && fz == tz) return true;
+        int dx = tx - fx;
+        int dz = tz - fz;
+        if (dx < -1 || dx > 1 || dz < -1 || dz > 1) return decide(world.getName(), fx, fz, tx, tz); // not a hopper
+
+        // Take the map first: if claims change meanwhile it is dropped along with this decision
+        StripedLongObjectMap<Boolean> cache = decisions.get(world.getName());
+        if (cache == null) cache = decisions.computeIfAbsent(world.getName(), w -> new StripedLongObjectMap<>());
+        long key = key(fx, fz, dx, dz);
+        Boolean cached = cache.get(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        boolean allowed = decide(world.getName(), fx, fz, tx, tz);
+        cache.put(key, allowed);
+        return allowed;
+    }
+
+    private boolean decide(String world, int fx, int fz, int tx, int tz) {
+        ClaimManager.Claim source = claims.getClaimAt(world, fx, fz);
+        if (source == null || source.contains(tx, tz)) return true;
+        ClaimManager.Claim target = claims.getClaimAt(world, tx, tz);
+        return target != null && target.owner().equals(source.owner());
+    }
+
+    /** Source chunk (22 bits per axis covers the world border) and one of nine directions. */
+    private static long key(int chunkX, int chunkZ, int dx, int dz) {
+        return ((long) (chunkX & 0x3FFFFF) << 26) | ((long) (chunkZ & 0x3FFFFF) << 4) | ((dx + 1) * 3 + dz + 1);
+    }
+
+    @Override
+    public void claimsChanged(String world, int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ) {
+        decisions.remove(world);
+    }
+}
@@ -0,0 +1,282 @@
+package de.bonescraft.land;
+
+import java.io.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot plus append-only journal of mutations.
+ *
+ * Files: {@code <name>.dat} (snapshot) and {@code <name>.journal}. Both start with a magic
+ * number, a format version and a generation counter; a journal is only replayed on top of the
+ * snapshot with the same generation. Compaction writes a new snapshot with generation + 1 and
+ * then starts an empty journal, so a crash in between simply ignores the stale journal.
+ *
+ * Journal records are {@code int length, payload, int crc32(payload)}. A torn record at the end
+ * of the file (crash during append) is detected and cut off when the journal is opened.
+ *
+ * Replay stops at the first torn record, so nothing may be appended after a failed write. The
+ * journal is then {@link #broken()}: further records are dropped until the owner compacts, which
+ * writes them into the snapshot along with everything else.
+ *
+ * All file I/O after {@link #open} happens on a single writer thread, in submission order.
+ * Nothing can be appended or compacted before {@link #open} has succeeded, so files that could
+ * not be read are never overwritten.
+ */
+final class Journal {
+    private static final int VERSION = 1;
+    private static final int MAX_RECORD = 1 << 20;
+
+    interface Reader {
+        void read(DataInputStream in) throws IOException;
+    }
+
+    interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private final BonescraftLand plugin;
+    private final File snapshotFile;
+    private final File journalFile;
+    private final int magic;
+    private final ExecutorService io;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong records = new AtomicLong();
+    private final Metrics.SaveStats appendStats;
+    private final Metrics.SaveStats snapshotStats;
+    private volatile boolean broken;
+    /** Set once {@link #open} has read the files; guards them against writes of an incomplete index. */
+    private volatile boolean opened;
+    private long generation;
+    private DataOutputStream out;
+
+    Journal(BonescraftLand plugin, String name, int magic) {
+        this.plugin = plugin;
+        this.snapshotFile = new File(plugin.getDataFolder(), name + ".dat");
+        this.journalFile = new File(plugin.getDataFolder(), name + ".journal");
+        this.magic = magic;
+        this.appendStats = Metrics.of(plugin).save(journalFile.getName());
+        this.snapshotStats = Metrics.of(plugin).save(snapshotFile.getName());
+        this.io = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "BonescraftLand-journal-" + name);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    boolean exists() {
+        return snapshotFile.isFile();
+    }
+
+    /**
+     * Writes the initial snapshot synchronously; must be called before {@link #open} if
+     * {@link #exists()} is false.
+     */
+    void create(Writer snapshot) throws IOException {
+        plugin.getDataFolder().mkdirs();
+        writeSnapshot(0, snapshot);
+        startJournal(0);
+        closeStream();
+    }
+
+    /**
+     * Reads the snapshot, replays every intact journal record and opens the journal for appending.
+     *
+     * @param snapshot reads the whole snapshot body
+     * @param record   reads the payload of one journal record
+     */
+    void open(Reader snapshot, Reader record) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile), 1 << 16))) {
+            this.generation = readHeader(in, snapshotFile);
+            snapshot.read(in);
+        }
+
+        long valid = replay(record);
+        if (valid < 0) {
+            startJournal(generation);
+        } else {
+            if (valid < journalFile.length()) {
+                plugin.getLogger().warning("Discarding torn tail of " + journalFile.getName()
+                        + " (" + (journalFile.length() - valid) + " bytes)");
+                try (RandomAccessFile raf = new RandomAccessFile(journalFile, "rw")) {
+                    raf.setLength(valid);
+                }
+            }
+            this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(journalFile, true), 1 << 16));
+        }
+        opened = true;
+    }
+
+    /**
+     * @return length of the intact journal prefix, or -1 if there is no usable journal
+     */
+    private long replay(Reader record) throws IOException {
+        if (!journalFile.isFile() || journalFile.length() < 16) return -1;
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile), 1 << 16))) {
+            long gen = readHeader(in, journalFile);
+            if (gen != generation) {
+                plugin.getLogger().info("Ignoring stale " + journalFile.getName() + " (already compacted)");
+                return -1;
+            }
+            long valid = 16;
+            byte[] buf = new byte[256];
+            while (true) {
+                int len;
+                try {
+                    len = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (len <= 0 || len > MAX_RECORD) break;
+                if (buf.length < len) buf = new byte[Math.max(len, buf.length * 2)];
+                int crcValue;
+                try {
+                    in.readFully(buf, 0, len);
+                    crcValue = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                crc.reset();
+                crc.update(buf, 0, len);
+                if ((int) crc.getValue() != crcValue) break;
+                record.read(new DataInputStream(new ByteArrayInputStream(buf, 0, len)));
+                records.incrementAndGet();
+                valid += 8 + len;
+            }
+            return valid;
+        }
+    }
+
+    /** Number of records appended since the last compaction. */
+    long records() {
+        return records.get();
+    }
+
+    /** True after a failed write, until a compaction has succeeded. */
+    boolean broken() {
+        return broken;
+    }
+
+    /**
+     * Queues one record for appending. The payload is written and flushed to the OS on the
+     * writer thread; consecutive appends are flushed together.
+     */
+    void append(byte[] payload) {
+        checkOpened();
+        records.incrementAndGet();
+        pending.incrementAndGet();
+        io.execute(() -> {
+            boolean last = pending.decrementAndGet() == 0;
+            if (broken) return;
+            long start = System.nanoTime();
+            try {
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                out.writeInt(payload.length);
+                out.write(payload);
+                out.writeInt((int) crc.getValue());
+                if (last) out.flush();
+                appendStats.success(start, 8 + payload.length);
+            } catch (IOException e) {
+                appendStats.failure();
+                plugin.getLogger().severe("Could not append to " + journalFile.getName() + ": " + e.getMessage()
+                        + "; changes are kept in memory until the next snapshot");
+                markBroken();
+            }
+        });
+    }
+
+    /**
+     * Queues a compaction. The snapshot writer runs on the writer thread, so it must only read
+     * data captured beforehand by the caller.
+     */
+    void compact(Writer snapshot) {
+        checkOpened();
+        records.set(0);
+        io.execute(() -> {
+            long start = System.nanoTime();
+            try {
+                closeStream();
+                writeSnapshot(generation + 1, snapshot);
+                generation++;
+                startJournal(generation);
+                broken = false;
+                snapshotStats.success(start, snapshotFile.length());
+            } catch (IOException e) {
+                snapshotStats.failure();
+                plugin.getLogger().severe("Could not compact " + snapshotFile.getName() + ": " + e.getMessage());
+                // The journal may be closed, cut short or from the wrong generation now
+                markBroken();
+            }
+        });
+    }
+
+    void close() {
+        io.shutdown();
+        try {
+            if (!io.awaitTermination(30, TimeUnit.SECONDS)) {
+                plugin.getLogger().warning("Timed out waiting for pending writes to " + journalFile.getName());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            closeStream();
+        } catch (IOException e) {
+            plugin.getLogger().severe("Could not close " + journalFile.getName() + ": " + e.getMessage());
+        }
+    }
+
+    private void checkOpened() {
+        if (!opened) throw new IllegalStateException(snapshotFile.getName() + " has not been read");
+    }
+
+    /** Stops appending after a failed write; the next successful compaction starts over. */
+    private void markBroken() {
+        broken = true;
+        try {
+            closeStream();
+        } catch (IOException ignored) {
+            // The stream is unusable either way
+        }
+        out = null;
+    }
+
+    private void closeStream() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    private void writeSnapshot(long gen, Writer body) throws IOException {
+        File tmp = new File(snapshotFile.getPath() + ".tmp");
+        try (DataOutputStream o = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+            o.writeInt(magic);
+            o.writeInt(VERSION);
+            o.writeLong(gen);
+            body.write(o);
+        }
+        WriteBehindWriter.moveAtomically(tmp.toPath(), snapshotFile.toPath());
+    }
+
+    private void startJournal(long gen) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(journalFile, false), 1 << 16));
+        out.writeInt(magic);
+        out.writeInt(VERSION);
+        out.writeLong(gen);
+        out.flush();
+    }
+
+    private long readHeader(DataInputStream in, File f) throws IOException {
+        if (in.readInt() != magic) throw new IOException(f.getName() + " has an unknown format");
+        int version = in.readInt();
+        if (version != VERSION) throw new IOException(f.getName() + " has unsupported version " + version);
+        return in.readLong();
+    }
+}
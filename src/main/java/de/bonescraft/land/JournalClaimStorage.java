@@ -0,0 +1,283 @@
+package de.bonescraft.land;
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.Bukkit;
+
+import java.io.*;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Binary claims backend: regions.dat snapshot plus regions.journal (see {@link Journal}).
+ *
+ * Each mutation appends one small record, so I/O per change no longer depends on the number
+ * of claims or their size. The journal is compacted into a fresh snapshot in the background once
+ * it holds more records than there are live claims. On first start existing per-chunk claims
+ * (claims.dat/claims.journal, or else claims.yml) are imported and merged into regions; the old
+ * files are left in place.
+ *
+ * Appends and compaction are serialized on the storage, so no change can fall between the
+ * snapshot a compaction writes and the journal it starts.
+ */
+final class JournalClaimStorage implements ClaimStorage {
+    private static final int MAGIC = 0x4252474E; // "BRGN"
+    private static final int MIN_COMPACT_RECORDS = 10_000;
+    /** Start a new record once a change batch gets this large; the journal accepts up to 1 MiB. */
+    private static final int MAX_CHANGE_RECORD = 512 * 1024;
+
+    private static final byte CHANGE = 1;
+    private static final byte TRUST = 2;
+    private static final byte UNTRUST = 3;
+    /** A CHANGE too large for one record: this part, further parts and a final CHANGE. */
+    private static final byte CHANGE_PART = 4;
+
+    private final BonescraftLand plugin;
+    private final Supplier<List<ClaimManager.Claim>> snapshot;
+    private final Journal journal;
+    private ScheduledTask compactTask;
+    /** Claims by id while loading. */
+    private Map<Integer, ClaimManager.Claim> loaded;
+    /** While loading: parts of a split change, applied once its final record is read. */
+    private List<Integer> partRemoved;
+    private List<ClaimManager.Claim> partAdded;
+
+    JournalClaimStorage(BonescraftLand plugin, Supplier<List<ClaimManager.Claim>> snapshot) {
+        this.plugin = plugin;
+        this.snapshot = snapshot;
+        this.journal = new Journal(plugin, "regions", MAGIC);
+    }
+
+    /**
+     * Fails instead of starting without claims: a server that cannot read regions.dat would
+     * otherwise leave every claim unprotected and soon compact its empty index over the file.
+     */
+    @Override
+    public List<ClaimManager.Claim> load() {
+        this.loaded = new HashMap<>();
+        try {
+            if (!journal.exists()) importLegacy();
+            journal.open(this::readSnapshot, this::replay);
+            if (partRemoved != null) {
+                // Cut off by a crash; a snapshot keeps the parts from being merged with later records
+                plugin.getLogger().warning("Discarding an incomplete change of " + partRemoved.size() + " removed and "
+                        + partAdded.size() + " added claims at the end of regions.journal");
+                List<ClaimManager.Claim> claims = new ArrayList<>(loaded.values());
+                journal.compact(out -> writeSnapshot(out, claims));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not load claims from regions.dat: " + e.getMessage(), e);
+        }
+        partRemoved = null;
+        partAdded = null;
+        long ticks = Math.max(1, plugin.getConfig().getInt("save-interval-seconds", 5)) * 20L;
+        if (compactTask == null) {
+            compactTask = Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin, t -> maybeCompact(), ticks, ticks);
+        }
+        List<ClaimManager.Claim> claims = new ArrayList<>(loaded.values());
+        loaded = null;
+        return claims;
+    }
+
+    private void importLegacy() throws IOException {
+        List<ClaimManager.Claim> claims;
+        String source;
+        if (LegacyClaimImport.journalExists(plugin)) {
+            claims = LegacyClaimImport.readJournal(plugin);
+            source = "claims.dat";
+        } else {
+            File yml = new File(plugin.getDataFolder(), "claims.yml");
+            claims = yml.isFile() ? YamlClaimStorage.read(yml) : List.of();
+            source = "claims.yml";
+        }
+        journal.create(out -> writeSnapshot(out, claims));
+        if (!claims.isEmpty()) {
+            plugin.getLogger().info("Imported " + claims.size() + " claims from " + source + " into regions.dat");
+        }
+    }
+
+    /** Compacts a long journal, or a broken one right away (see {@link Journal#broken()}). */
+    private synchronized void maybeCompact() {
+        boolean broken = journal.broken();
+        long records = journal.records();
+        if (!broken && records < MIN_COMPACT_RECORDS) return;
+        List<ClaimManager.Claim> claims = snapshot.get();
+        if (!broken && records < claims.size()) return;
+        journal.compact(out -> writeSnapshot(out, claims));
+    }
+
+    // ---- snapshot -------------------------------------------------------------------------
+
+    private static void writeSnapshot(DataOutputStream out, List<ClaimManager.Claim> claims) throws IOException {
+        out.writeInt(claims.size());
+        for (ClaimManager.Claim c : claims) writeClaim(out, c);
+    }
+
+    private void readSnapshot(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            ClaimManager.Claim c = readClaim(in);
+            loaded.put(c.id(), c);
+        }
+    }
+
+    // ---- journal records ------------------------------------------------------------------
+
+    private void replay(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case CHANGE, CHANGE_PART -> {
+                if (partRemoved == null) {
+                    partRemoved = new ArrayList<>();
+                    partAdded = new ArrayList<>();
+                }
+                int removed = in.readInt();
+                for (int i = 0; i < removed; i++) partRemoved.add(in.readInt());
+                int added = in.readInt();
+                for (int i = 0; i < added; i++) partAdded.add(readClaim(in));
+                if (type == CHANGE_PART) return;
+                for (int id : partRemoved) loaded.remove(id);
+                for (ClaimManager.Claim c : partAdded) loaded.put(c.id(), c);
+                partRemoved = null;
+                partAdded = null;
+            }
+            case TRUST -> {
+                int id = in.readInt();
+                UUID member = readUuid(in);
+                TrustLevel level = TrustLevel.values()[in.readByte()];
+                loaded.computeIfPresent(id, (k, c) -> c.withMember(member, level));
+            }
+            case UNTRUST -> {
+                int id = in.readInt();
+                UUID member = readUuid(in);
+                loaded.computeIfPresent(id, (k, c) -> c.withoutMember(member));
+            }
+            default -> throw new IOException("Unknown claim journal record " + type);
+        }
+    }
+
+    /**
+     * One record for the whole change: removed ids, then the added claims. Changes too large for
+     * one journal record (admin operations on thousands of claims) are split into CHANGE_PART
+     * records and a final CHANGE; replay applies none of them until it has read the final one.
+     */
+    @Override
+    public synchronized void changed(List<ClaimManager.Claim> removed, List<ClaimManager.Claim> added) {
+        int r = 0;
+        int a = 0;
+        while (r < removed.size() || a < added.size()) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + removed.size() * 4 + added.size() * 64);
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeByte(CHANGE_PART); // made CHANGE below if this is the last part
+                int removedHere = Math.min(removed.size() - r, MAX_CHANGE_RECORD / 8);
+                out.writeInt(removedHere);
+                for (int i = 0; i < removedHere; i++) out.writeInt(removed.get(r++).id());
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                DataOutputStream claims = new DataOutputStream(body);
+                int addedHere = 0;
+                while (a < added.size() && out.size() + body.size() < MAX_CHANGE_RECORD) {
+                    writeClaim(claims, added.get(a++));
+                    addedHere++;
+                }
+                out.writeInt(addedHere);
+                body.writeTo(out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // ByteArrayOutputStream does not throw
+            }
+            byte[] record = bytes.toByteArray();
+            if (r == removed.size() && a == added.size()) record[0] = CHANGE;
+            journal.append(record);
+        }
+    }
+
+    @Override
+    public synchronized void trusted(ClaimManager.Claim claim, UUID member, TrustLevel level) {
+        append(TRUST, claim.id(), out -> {
+            writeUuid(out, member);
+            out.writeByte(level.ordinal());
+        });
+    }
+
+    @Override
+    public synchronized void untrusted(ClaimManager.Claim claim, UUID member) {
+        append(UNTRUST, claim.id(), out -> writeUuid(out, member));
+    }
+
+    private void append(byte type, int id, Journal.Writer body) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(type);
+            out.writeInt(id);
+            body.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // ByteArrayOutputStream does not throw
+        }
+        journal.append(bytes.toByteArray());
+    }
+
+    @Override
+    public synchronized void close() {
+        if (compactTask != null) {
+            compactTask.cancel();
+            compactTask = null;
+        }
+        // Last chance for the changes a failed append left out of the journal
+        if (journal.broken()) {
+            List<ClaimManager.Claim> claims = snapshot.get();
+            journal.compact(out -> writeSnapshot(out, claims));
+        }
+        journal.close();
+    }
+
+    // ---- codec helpers --------------------------------------------------------------------
+
+    private static void writeClaim(DataOutputStream out, ClaimManager.Claim c) throws IOException {
+        out.writeInt(c.id());
+        out.writeUTF(c.world());
+        out.writeInt(c.minX());
+        out.writeInt(c.minZ());
+        out.writeInt(c.maxX());
+        out.writeInt(c.maxZ());
+        writeUuid(out, c.owner());
+        writeMembers(out, c.members());
+    }
+
+    private static ClaimManager.Claim readClaim(DataInputStream in) throws IOException {
+        int id = in.readInt();
+        String world = in.readUTF();
+        int minX = in.readInt();
+        int minZ = in.readInt();
+        int maxX = in.readInt();
+        int maxZ = in.readInt();
+        UUID owner = readUuid(in);
+        return new ClaimManager.Claim(id, world, minX, minZ, maxX, maxZ, owner, readMembers(in));
+    }
+
+    private static void writeMembers(DataOutputStream out, Map<UUID, TrustLevel> members) throws IOException {
+        out.writeShort(members.size());
+        for (Map.Entry<UUID, TrustLevel> e : members.entrySet()) {
+            writeUuid(out, e.getKey());
+            out.writeByte(e.getValue().ordinal());
+        }
+    }
+
+    static Map<UUID, TrustLevel> readMembers(DataInputStream in) throws IOException {
+        int n = in.readUnsignedShort();
+        if (n == 0) return Map.of();
+        TrustLevel[] levels = TrustLevel.values();
+        Map<UUID, TrustLevel> members = new HashMap<>(n * 2);
+        for (int i = 0; i < n; i++) {
+            UUID id = readUuid(in);
+            members.put(id, levels[in.readByte()]);
+        }
+        return members;
+    }
+
+    static void writeUuid(DataOutputStream out, UUID id) throws IOException {
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+    }
+
+    static UUID readUuid(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+}
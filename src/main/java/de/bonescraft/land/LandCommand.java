@@ -1,6 +1,5 @@
 package de.bonescraft.land;
 
-import org.bukkit.Bukkit;
 import org.bukkit.Chunk;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
@@ -10,6 +9,8 @@ import org.bukkit.entity.Player;
 import java.util.*;
 
 public class LandCommand implements CommandExecutor {
+    private static final int LIST_PAGE_SIZE = 8;
+
     private final BonescraftLand plugin;
     private final ClaimManager claimManager;
 
@@ -20,6 +21,11 @@ public class LandCommand implements CommandExecutor {
 
     @Override
     public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        // Works from the console too, for migrations and backups
+        if (args.length >= 1 && args[0].equalsIgnoreCase("admin")) {
+            admin(sender, args);
+            return true;
+        }
         if (!(sender instanceof Player player)) {
             sender.sendMessage("Only players.");
             return true;
@@ -42,7 +48,7 @@ public class LandCommand implements CommandExecutor {
                         return true;
                     }
                 }
-                int allowedMax = claimManager.getMaxClaimSizeFor(player);
+                int allowedMax = plugin.getPermissionCache().get(player).maxClaimSize();
                 if (size < 1) size = 1;
                 if (size > allowedMax) {
                     player.sendMessage("§cYou can't claim size " + size + ". Max for you: " + allowedMax);
@@ -50,12 +56,21 @@ public class LandCommand implements CommandExecutor {
                 }
 
                 Chunk origin = player.getLocation().getChunk();
-                if (claimManager.isAnyClaimInArea(origin, size)) {
-                    player.sendMessage("§cThis area overlaps an existing claim.");
+                ClaimManager.AreaClaimResult result = claimManager.claimArea(player.getUniqueId(), origin, size);
+                if (!result.success()) {
+                    List<ClaimManager.ChunkPos> conflicts = result.conflicts();
+                    player.sendMessage("§cThis area overlaps " + conflicts.size() + " chunk(s) claimed by others:");
+                    int shown = Math.min(conflicts.size(), 8);
+                    StringBuilder sb = new StringBuilder("§7");
+                    for (int i = 0; i < shown; i++) {
+                        if (i > 0) sb.append(", ");
+                        sb.append(conflicts.get(i));
+                    }
+                    if (conflicts.size() > shown) sb.append(" ... (+").append(conflicts.size() - shown).append(")");
+                    player.sendMessage(sb.toString());
                     return true;
                 }
-                claimManager.claimArea(player.getUniqueId(), origin, size);
-                player.sendMessage("§aClaimed " + size + "x" + size + " chunks at your current chunk.");
+                player.sendMessage("§aClaimed " + result.claimed() + " chunk(s) (" + size + "x" + size + ") at your current chunk.");
                 return true;
             }
             case "unclaim" -> {
@@ -70,17 +85,18 @@ public class LandCommand implements CommandExecutor {
                 return true;
             }
             case "info" -> {
-                Chunk c = player.getLocation().getChunk();
-                var owner = claimManager.getOwner(c);
-                if (owner.isEmpty()) {
+                ClaimManager.Claim claim = claimManager.getClaimAt(player.getLocation().getChunk());
+                if (claim == null) {
                     player.sendMessage("§7No claim here.");
                 } else {
-                    UUID uuid = owner.get();
-                    String name = Optional.ofNullable(Bukkit.getOfflinePlayer(uuid).getName()).orElse(uuid.toString());
-                    int size = claimManager.getClaimSize(c);
-                    player.sendMessage("§aClaim owner: §f" + name + " §7(" + uuid + ")");
-                    player.sendMessage("§aClaim size: §f" + size + "x" + size + " chunks");
-                    player.sendMessage("§aTrusted: §f" + claimManager.getTrustedWithLevels(c).size());
+                    UUID uuid = claim.owner();
+                    plugin.getNameCache().name(uuid, name -> {
+                        player.sendMessage("§aClaim owner: §f" + name + " §7(" + uuid + ")");
+                        player.sendMessage("§aClaim size: §f" + claim.width() + "x" + claim.depth()
+                                + " §7(" + claim.chunks() + " chunks, from " + ClaimManager.chunkKey(claim.minX(), claim.minZ())
+                                + " to " + ClaimManager.chunkKey(claim.maxX(), claim.maxZ()) + ")");
+                        player.sendMessage("§aTrusted: §f" + claim.members().size());
+                    });
                 }
                 return true;
             }
@@ -94,15 +110,13 @@ public class LandCommand implements CommandExecutor {
                     player.sendMessage("§cYou don't own this claim.");
                     return true;
                 }
-                UUID target = claimManager.resolveUUID(args[1]);
-                if (target == null) {
-                    player.sendMessage("§cPlayer not found.");
-                    return true;
-                }
-                TrustLevel level = TrustLevel.BUILD;
-                if (args.length >= 3) level = TrustLevel.parse(args[2]);
-                claimManager.trust(c, target, level);
-                player.sendMessage("§aTrusted " + args[1] + " (" + level.name() + ") in this claim.");
+                TrustLevel level = args.length >= 3 ? TrustLevel.parse(args[2]) : TrustLevel.BUILD;
+                String name = args[1];
+                plugin.getNameCache().resolve(name, target -> {
+                    if (!canManage(player, c, target)) return;
+                    claimManager.trust(c, target, level);
+                    player.sendMessage("§aTrusted " + name + " (" + level.name() + ") in this claim.");
+                });
                 return true;
             }
             case "remove" -> {
@@ -115,19 +129,52 @@ public class LandCommand implements CommandExecutor {
                     player.sendMessage("§cYou don't own this claim.");
                     return true;
                 }
-                UUID target = claimManager.resolveUUID(args[1]);
-                if (target == null) {
-                    player.sendMessage("§cPlayer not found.");
+                String name = args[1];
+                plugin.getNameCache().resolve(name, target -> {
+                    if (!canManage(player, c, target)) return;
+                    claimManager.untrust(c, target);
+                    player.sendMessage("§aRemoved trust for " + name + " in this claim.");
+                });
+                return true;
+            }
+            case "list" -> {
+                int page = 1;
+                if (args.length >= 2) {
+                    try {
+                        page = Integer.parseInt(args[1]);
+                    } catch (NumberFormatException ignored) {
+                        player.sendMessage("§cUsage: /land list [page]");
+                        return true;
+                    }
+                }
+                sendClaimList(player, player.getUniqueId(), page);
+                return true;
+            }
+            case "show" -> {
+                ClaimBorderView borders = plugin.getClaimBorders();
+                if (borders.toggle(player)) {
+                    player.sendMessage("§aShowing claim borders for " + borders.durationSeconds()
+                            + "s §7(green: yours, aqua: trusted, red: others). §a/land show §7hides them.");
+                } else {
+                    player.sendMessage("§7Claim borders hidden.");
+                }
+                return true;
+            }
+            case "reload" -> {
+                if (!player.hasPermission("bonescraft.bypass")) {
+                    player.sendMessage("§cNo permission.");
                     return true;
                 }
-                claimManager.untrust(c, target);
-                player.sendMessage("§aRemoved trust for " + args[1] + " in this claim.");
+                plugin.reloadSettings();
+                player.sendMessage("§aConfig reloaded.");
                 return true;
             }
-            case "list" -> {
-                var list = claimManager.listClaims(player.getUniqueId());
-                player.sendMessage("§aYour claims: §f" + list.size());
-                for (String s : list) player.sendMessage("§7- §f" + s);
+            case "stats" -> {
+                if (!player.hasPermission("bonescraft.bypass")) {
+                    player.sendMessage("§cNo permission.");
+                    return true;
+                }
+                sendStats(player);
                 return true;
             }
             default -> {
@@ -137,12 +184,117 @@ public class LandCommand implements CommandExecutor {
         }
     }
 
+    /** /land admin export|import <file>, /land admin expiry [run] */
+    private void admin(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("bonescraft.bypass")) {
+            sender.sendMessage("§cNo permission.");
+            return;
+        }
+        String action = args.length >= 2 ? args[1].toLowerCase(Locale.ROOT) : "";
+        if (action.equals("expiry")) {
+            sendExpiry(sender, args.length >= 3 && args[2].equalsIgnoreCase("run"));
+            return;
+        }
+        if (args.length < 3) {
+            sender.sendMessage("§cUsage: /land admin <export|import> <file> | expiry [run]");
+            return;
+        }
+        switch (action) {
+            case "export" -> plugin.getClaimTransfer().export(sender, args[2]);
+            case "import" -> plugin.getClaimTransfer().importFile(sender, args[2]);
+            default -> sender.sendMessage("§cUsage: /land admin <export|import> <file> | expiry [run]");
+        }
+    }
+
+    private void sendExpiry(CommandSender sender, boolean run) {
+        ClaimExpiry expiry = plugin.getClaimExpiry();
+        if (run) {
+            expiry.runNow();
+            sender.sendMessage("§aStarting a claim expiry pass.");
+        }
+        sender.sendMessage(expiry.status());
+        ClaimExpiry.Result last = expiry.lastResult();
+        if (last == null) return;
+        sender.sendMessage("§7Last pass" + (last.dryRun() ? " (dry run)" : "") + ": §f" + last.claims() + " §7claims ("
+                + last.chunks() + " chunks) of §f" + last.expiredOwners() + "§7/" + last.owners()
+                + " owners without playtime since " + last.since()
+                + (last.report() == null ? "" : ", see transfer/" + last.report().getFileName()));
+    }
+
+    /**
+     * Re-checks a trust change after the name was resolved, which may have taken a moment.
+     */
+    private boolean canManage(Player player, Chunk c, UUID target) {
+        if (!player.isOnline()) return false;
+        if (target == null) {
+            player.sendMessage("§cPlayer not found.");
+            return false;
+        }
+        if (!claimManager.isOwner(c, player.getUniqueId()) && !player.hasPermission("bonescraft.bypass")) {
+            player.sendMessage("§cYou don't own this claim.");
+            return false;
+        }
+        return true;
+    }
+
+    private void sendClaimList(Player player, UUID owner, int page) {
+        List<ClaimManager.Claim> claims = claimManager.getClaimsOf(owner);
+        if (claims.isEmpty()) {
+            player.sendMessage("§7You don't have any claims.");
+            return;
+        }
+        int pages = (claims.size() + LIST_PAGE_SIZE - 1) / LIST_PAGE_SIZE;
+        page = Math.max(1, Math.min(page, pages));
+        player.sendMessage("§aYour claims: §f" + claimManager.getClaimCount(owner) + " chunk(s) in "
+                + claims.size() + " claim(s) §7(page " + page + "/" + pages + ")");
+        int from = (page - 1) * LIST_PAGE_SIZE;
+        for (ClaimManager.Claim r : claims.subList(from, Math.min(claims.size(), from + LIST_PAGE_SIZE))) {
+            int centerX = ((r.minX() + r.maxX() + 1) << 4) / 2;
+            int centerZ = ((r.minZ() + r.maxZ() + 1) << 4) / 2;
+            player.sendMessage("§7- §f" + r.world() + " §7around §f" + centerX + ", " + centerZ
+                    + " §7(" + r.width() + "x" + r.depth() + ", " + r.chunks() + " chunks)");
+        }
+        if (page < pages) player.sendMessage("§7/land list " + (page + 1) + " for more");
+    }
+
+    private void sendStats(Player player) {
+        Metrics m = plugin.getMetrics();
+        player.sendMessage("§aEvent handlers §7(calls, mean, p50, p99, max):");
+        m.handlers().forEach((name, h) -> {
+            if (h.count() == 0) return;
+            player.sendMessage("§7- §f" + name + " §7" + h.count() + ", " + Metrics.duration(h.mean())
+                    + ", " + Metrics.duration(h.percentile(0.5)) + ", " + Metrics.duration(h.percentile(0.99))
+                    + ", " + Metrics.duration(h.max()));
+        });
+        long lookups = m.claimLookups.sum();
+        player.sendMessage("§aClaim lookups: §f" + lookups + " §7(" + Metrics.percent(m.claimLookupHits.sum(), lookups) + " claimed)");
+        long permHits = m.permissionHits.sum();
+        long nameHits = m.nameHits.sum();
+        long transferHits = m.transferHits.sum();
+        long decisionHits = m.decisionHits.sum();
+        player.sendMessage("§aCache hit rate: §7permissions §f" + Metrics.percent(permHits, permHits + m.permissionMisses.sum())
+                + "§7, names §f" + Metrics.percent(nameHits, nameHits + m.nameMisses.sum())
+                + "§7, transfers §f" + Metrics.percent(transferHits, transferHits + m.transferMisses.sum())
+                + "§7, decisions §f" + Metrics.percent(decisionHits, decisionHits + m.decisionMisses.sum()));
+        player.sendMessage("§aSaves §7(count, mean, max, written, failed):");
+        m.saves().forEach((store, s) -> player.sendMessage("§7- §f" + store + " §7" + s.duration.count()
+                + ", " + Metrics.duration(s.duration.mean()) + ", " + Metrics.duration(s.duration.max())
+                + ", " + Metrics.bytes(s.bytes.sum()) + ", " + s.failures.sum()));
+    }
+
     private void sendHelp(Player p) {
         p.sendMessage("§a/land claim [size] §7- Claim current chunk (size 1-3)");
-        p.sendMessage("§a/land unclaim §7- Unclaim current claim");
+        p.sendMessage("§a/land unclaim §7- Unclaim the whole claim you are standing in");
         p.sendMessage("§a/land info §7- Show claim info");
         p.sendMessage("§a/land add <player> [build|break|container_view|container_take] §7- Trust player in this claim");
         p.sendMessage("§a/land remove <player> §7- Untrust player");
-        p.sendMessage("§a/land list §7- List your claims");
+        p.sendMessage("§a/land list [page] §7- List your claims");
+        p.sendMessage("§a/land show §7- Show claim borders around you");
+        if (p.hasPermission("bonescraft.bypass")) {
+            p.sendMessage("§a/land reload §7- Reload config.yml");
+            p.sendMessage("§a/land stats §7- Show performance metrics");
+            p.sendMessage("§a/land admin <export|import> <file> §7- Back up or import claims (transfer/<file>)");
+            p.sendMessage("§a/land admin expiry [run] §7- Claim expiry status, or start a pass now");
+        }
     }
 }
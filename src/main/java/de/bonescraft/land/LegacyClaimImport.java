@@ -0,0 +1,176 @@
+package de.bonescraft.land;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Reads claims from the formats used before claims became regions, where every chunk was its
+ * own entry with a copy of owner and members: claims.dat plus claims.journal, or claims.yml
+ * without a {@code format} key ({@code world -> "x,z" -> owner, members}).
+ *
+ * {@link #merge} turns the chunks back into rectangles. Only chunks with the same world, owner
+ * and exactly the same members are merged, so nobody gains or loses access in the migration.
+ */
+final class LegacyClaimImport {
+    private static final int JOURNAL_MAGIC = 0x42434C4D; // "BCLM"
+    private static final byte CLAIM = 1;
+    private static final byte UNCLAIM = 2;
+    private static final byte TRUST = 3;
+    private static final byte UNTRUST = 4;
+    private static final byte CLAIM_AREA = 5;
+    private static final byte UNCLAIM_AREA = 6;
+
+    /** One claimed chunk in the old format. */
+    private record OldClaim(String world, int x, int z, UUID owner, Map<UUID, TrustLevel> members) {
+        OldClaim withMembers(Map<UUID, TrustLevel> members) {
+            return new OldClaim(world, x, z, owner, members);
+        }
+    }
+
+    private record Group(String world, UUID owner, Map<UUID, TrustLevel> members) {}
+
+    private LegacyClaimImport() {}
+
+    static boolean journalExists(BonescraftLand plugin) {
+        return new File(plugin.getDataFolder(), "claims.dat").isFile();
+    }
+
+    static List<ClaimManager.Claim> readJournal(BonescraftLand plugin) throws IOException {
+        Map<String, LongObjectMap<OldClaim>> chunks = new HashMap<>();
+        Journal journal = new Journal(plugin, "claims", JOURNAL_MAGIC);
+        journal.open(in -> readSnapshot(in, chunks), in -> replay(in, chunks));
+        journal.close();
+        List<OldClaim> all = new ArrayList<>();
+        for (LongObjectMap<OldClaim> map : chunks.values()) map.forEach((key, c) -> all.add(c));
+        return merge(all);
+    }
+
+    /** @return true if the document uses the per-chunk layout */
+    static boolean isLegacyYaml(YamlConfiguration cfg) {
+        return !cfg.contains("format");
+    }
+
+    static List<ClaimManager.Claim> fromYaml(YamlConfiguration cfg) {
+        List<OldClaim> all = new ArrayList<>();
+        for (String world : cfg.getKeys(false)) {
+            ConfigurationSection worldSec = cfg.getConfigurationSection(world);
+            if (worldSec == null) continue;
+            for (String key : worldSec.getKeys(false)) {
+                ConfigurationSection claimSec = worldSec.getConfigurationSection(key);
+                if (claimSec == null) continue;
+                int[] chunk = YamlClaimStorage.parseChunk(key);
+                UUID owner = YamlClaimStorage.parseUuid(claimSec.getString("owner"));
+                if (chunk == null || owner == null) continue;
+                all.add(new OldClaim(world, chunk[0], chunk[1], owner,
+                        YamlClaimStorage.parseMembers(claimSec.getStringList("members"))));
+            }
+        }
+        return merge(all);
+    }
+
+    /**
+     * Covers the chunks with rectangles, greedily: chunks are visited by x, then z, and each one
+     * not covered yet starts a rectangle that grows along z first and then along x for as long
+     * as every chunk in the new column belongs to the same group. A square claimed in one go
+     * comes back as a single rectangle.
+     */
+    private static List<ClaimManager.Claim> merge(List<OldClaim> chunks) {
+        Map<Group, List<OldClaim>> groups = new LinkedHashMap<>();
+        for (OldClaim c : chunks) {
+            groups.computeIfAbsent(new Group(c.world(), c.owner(), c.members()), k -> new ArrayList<>()).add(c);
+        }
+        List<ClaimManager.Claim> out = new ArrayList<>();
+        int id = 1;
+        for (Map.Entry<Group, List<OldClaim>> e : groups.entrySet()) {
+            Group g = e.getKey();
+            List<OldClaim> members = e.getValue();
+            members.sort(Comparator.comparingInt(OldClaim::x).thenComparingInt(OldClaim::z));
+            LongObjectMap<OldClaim> open = new LongObjectMap<>();
+            for (OldClaim c : members) open.put(ChunkClaimMap.pack(c.x(), c.z()), c);
+            for (OldClaim c : members) {
+                if (open.get(ChunkClaimMap.pack(c.x(), c.z())) == null) continue;
+                int maxZ = c.z();
+                while (open.get(ChunkClaimMap.pack(c.x(), maxZ + 1)) != null) maxZ++;
+                int maxX = c.x();
+                while (columnOpen(open, maxX + 1, c.z(), maxZ)) maxX++;
+                for (int x = c.x(); x <= maxX; x++) {
+                    for (int z = c.z(); z <= maxZ; z++) open.remove(ChunkClaimMap.pack(x, z));
+                }
+                out.add(new ClaimManager.Claim(id++, g.world(), c.x(), c.z(), maxX, maxZ, g.owner(), g.members()));
+            }
+        }
+        return out;
+    }
+
+    private static boolean columnOpen(LongObjectMap<OldClaim> open, int x, int minZ, int maxZ) {
+        for (int z = minZ; z <= maxZ; z++) {
+            if (open.get(ChunkClaimMap.pack(x, z)) == null) return false;
+        }
+        return true;
+    }
+
+    // ---- old binary format ----------------------------------------------------------------
+
+    private static void readSnapshot(DataInputStream in, Map<String, LongObjectMap<OldClaim>> into) throws IOException {
+        int worlds = in.readInt();
+        for (int w = 0; w < worlds; w++) {
+            String world = in.readUTF();
+            int count = in.readInt();
+            LongObjectMap<OldClaim> map = into.computeIfAbsent(world, k -> new LongObjectMap<>());
+            for (int i = 0; i < count; i++) {
+                int x = in.readInt();
+                int z = in.readInt();
+                UUID owner = JournalClaimStorage.readUuid(in);
+                map.put(ChunkClaimMap.pack(x, z), new OldClaim(world, x, z, owner, JournalClaimStorage.readMembers(in)));
+            }
+        }
+    }
+
+    private static void replay(DataInputStream in, Map<String, LongObjectMap<OldClaim>> into) throws IOException {
+        byte type = in.readByte();
+        String world = in.readUTF();
+        LongObjectMap<OldClaim> map = into.computeIfAbsent(world, k -> new LongObjectMap<>());
+        if (type == CLAIM_AREA || type == UNCLAIM_AREA) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                int x = in.readInt();
+                int z = in.readInt();
+                if (type == CLAIM_AREA) map.put(ChunkClaimMap.pack(x, z), new OldClaim(world, x, z, JournalClaimStorage.readUuid(in), Map.of()));
+                else map.remove(ChunkClaimMap.pack(x, z));
+            }
+            return;
+        }
+        int x = in.readInt();
+        int z = in.readInt();
+        long key = ChunkClaimMap.pack(x, z);
+        switch (type) {
+            case CLAIM -> map.put(key, new OldClaim(world, x, z, JournalClaimStorage.readUuid(in), JournalClaimStorage.readMembers(in)));
+            case UNCLAIM -> map.remove(key);
+            case TRUST -> {
+                UUID member = JournalClaimStorage.readUuid(in);
+                TrustLevel level = TrustLevel.values()[in.readByte()];
+                OldClaim c = map.get(key);
+                if (c != null) {
+                    Map<UUID, TrustLevel> copy = new HashMap<>(c.members());
+                    copy.put(member, level);
+                    map.put(key, c.withMembers(copy));
+                }
+            }
+            case UNTRUST -> {
+                UUID member = JournalClaimStorage.readUuid(in);
+                OldClaim c = map.get(key);
+                if (c != null && c.members().containsKey(member)) {
+                    Map<UUID, TrustLevel> copy = new HashMap<>(c.members());
+                    copy.remove(member);
+                    map.put(key, c.withMembers(copy));
+                }
+            }
+            default -> throw new IOException("Unknown claim journal record " + type);
+        }
+    }
+}
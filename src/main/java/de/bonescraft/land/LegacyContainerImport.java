@@ -0,0 +1,61 @@
+package de.bonescraft.land;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Reads container owners from the formats used before region files: containers.dat plus
+ * containers.journal, or container_owners.yml. Keys are {@code "world:x:y:z"}.
+ */
+final class LegacyContainerImport {
+    private static final int JOURNAL_MAGIC = 0x42434F57; // "BCOW"
+    private static final byte SET = 1;
+    private static final byte REMOVE = 2;
+
+    private LegacyContainerImport() {}
+
+    static boolean exists(BonescraftLand plugin) {
+        return new File(plugin.getDataFolder(), "containers.dat").isFile()
+                || new File(plugin.getDataFolder(), "container_owners.yml").isFile();
+    }
+
+    static void read(BonescraftLand plugin, Map<String, UUID> into) throws IOException {
+        Journal journal = new Journal(plugin, "containers", JOURNAL_MAGIC);
+        if (journal.exists()) {
+            journal.open(in -> {
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    String key = in.readUTF();
+                    into.put(key, JournalClaimStorage.readUuid(in));
+                }
+            }, in -> replay(in, into));
+            journal.close();
+            return;
+        }
+        File yml = new File(plugin.getDataFolder(), "container_owners.yml");
+        if (!yml.isFile()) return;
+        YamlConfiguration cfg = YamlConfiguration.loadConfiguration(yml);
+        for (String key : cfg.getKeys(false)) {
+            String s = cfg.getString(key);
+            if (s == null || s.isBlank()) continue;
+            try {
+                into.put(key, UUID.fromString(s));
+            } catch (IllegalArgumentException ignored) {}
+        }
+    }
+
+    private static void replay(DataInputStream in, Map<String, UUID> into) throws IOException {
+        byte type = in.readByte();
+        String key = in.readUTF();
+        switch (type) {
+            case SET -> into.put(key, JournalClaimStorage.readUuid(in));
+            case REMOVE -> into.remove(key);
+            default -> throw new IOException("Unknown container journal record " + type);
+        }
+    }
+}
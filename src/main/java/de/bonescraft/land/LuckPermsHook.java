@@ -0,0 +1,29 @@
+package de.bonescraft.land;
+
+import net.luckperms.api.LuckPerms;
+import net.luckperms.api.LuckPermsProvider;
+import net.luckperms.api.event.user.UserDataRecalculateEvent;
+import org.bukkit.entity.Player;
+
+/**
+ * Optional LuckPerms integration. Only loaded when LuckPerms is enabled, so the plugin keeps
+ * working without it (softdepend).
+ */
+final class LuckPermsHook {
+    private LuckPermsHook() {}
+
+    static void register(BonescraftLand plugin, PermissionCache cache) {
+        LuckPerms lp = LuckPermsProvider.get();
+        // Fired on LuckPerms' own threads; the cache reschedules onto the player's thread
+        lp.getEventBus().subscribe(plugin, UserDataRecalculateEvent.class,
+                e -> cache.refresh(e.getUser().getUniqueId()));
+        plugin.getLogger().info("Hooked into LuckPerms for permission updates.");
+    }
+
+    /**
+     * @return the player's resolved meta value for the key, or null if unset
+     */
+    static String metaValue(Player player, String key) {
+        return LuckPermsProvider.get().getPlayerAdapter(Player.class).getMetaData(player).getMetaValue(key);
+    }
+}
@@ -0,0 +1,91 @@
+package de.bonescraft.land;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Always-on instrumentation of the hot paths: event handler latencies, lookup and cache hit
+ * counters, and save statistics per data file.
+ *
+ * Components keep direct references to their histograms and counters, so recording is a couple
+ * of atomic increments with no lookup or allocation. Everything is cumulative since startup;
+ * {@code /land stats} and the {@link MetricsExporter} only read.
+ */
+public class Metrics {
+    /** Per event handler of {@link ProtectionListener} and the {@link ActivitySampler} run, in registration order. */
+    private final Map<String, LatencyHistogram> handlers = new LinkedHashMap<>();
+    private final Map<String, SaveStats> saves = new ConcurrentHashMap<>();
+
+    final LongAdder claimLookups = new LongAdder();
+    final LongAdder claimLookupHits = new LongAdder();
+    final LongAdder permissionHits = new LongAdder();
+    final LongAdder permissionMisses = new LongAdder();
+    final LongAdder nameHits = new LongAdder();
+    final LongAdder nameMisses = new LongAdder();
+    final LongAdder transferHits = new LongAdder();
+    final LongAdder transferMisses = new LongAdder();
+    final LongAdder decisionHits = new LongAdder();
+    final LongAdder decisionMisses = new LongAdder();
+
+    /** Writes of one data file, or of a group of files such as the container regions. */
+    static final class SaveStats {
+        final LatencyHistogram duration = new LatencyHistogram();
+        final LongAdder bytes = new LongAdder();
+        final LongAdder failures = new LongAdder();
+
+        void success(long startNanos, long bytesWritten) {
+            duration.record(System.nanoTime() - startNanos);
+            bytes.add(bytesWritten);
+        }
+
+        void failure() {
+            failures.increment();
+        }
+    }
+
+    /** Registered while the listeners are created on startup. */
+    synchronized LatencyHistogram handler(String name) {
+        return handlers.computeIfAbsent(name, k -> new LatencyHistogram());
+    }
+
+    synchronized Map<String, LatencyHistogram> handlers() {
+        return new LinkedHashMap<>(handlers);
+    }
+
+    SaveStats save(String store) {
+        return saves.computeIfAbsent(store, k -> new SaveStats());
+    }
+
+    /** Sorted by store name. */
+    Map<String, SaveStats> saves() {
+        return new TreeMap<>(saves);
+    }
+
+    /** Metrics for components created without a plugin (benchmarks) are recorded and discarded. */
+    static Metrics of(BonescraftLand plugin) {
+        return plugin == null ? new Metrics() : plugin.getMetrics();
+    }
+
+    /** Ratio as a percentage, e.g. "97.3%", or "-" before the first sample. */
+    static String percent(long part, long total) {
+        return total == 0 ? "-" : String.format(Locale.ROOT, "%.1f%%", 100.0 * part / total);
+    }
+
+    /** Nanoseconds as a short human-readable duration. */
+    static String duration(double nanos) {
+        if (nanos < 1_000) return String.format(Locale.ROOT, "%.0fns", nanos);
+        if (nanos < 1_000_000) return String.format(Locale.ROOT, "%.1fµs", nanos / 1_000);
+        return String.format(Locale.ROOT, "%.2fms", nanos / 1_000_000);
+    }
+
+    /** Byte count with a binary unit, e.g. "1.4 MiB". */
+    static String bytes(long n) {
+        if (n < 1024) return n + " B";
+        if (n < 1024 * 1024) return String.format(Locale.ROOT, "%.1f KiB", n / 1024.0);
+        return String.format(Locale.ROOT, "%.1f MiB", n / (1024.0 * 1024));
+    }
+}
@@ -0,0 +1,160 @@
+package de.bonescraft.land;
+
+import com.sun.net.httpserver.HttpServer;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.Bukkit;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes {@link Metrics} in the Prometheus text format, optionally on a local HTTP endpoint
+ * ({@code metrics-http-port}) and/or as {@code metrics.prom} in the data folder every
+ * {@code metrics-file-interval-seconds}, e.g. for the node_exporter textfile collector. Both are
+ * off by default. Rendering only reads counters, so it runs off the main thread.
+ */
+final class MetricsExporter {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final BonescraftLand plugin;
+    private final Metrics metrics;
+    private HttpServer server;
+    private ExecutorService serverThread;
+    private ScheduledTask fileTask;
+
+    MetricsExporter(BonescraftLand plugin, Metrics metrics) {
+        this.plugin = plugin;
+        this.metrics = metrics;
+    }
+
+    void start() {
+        int port = plugin.getConfig().getInt("metrics-http-port", 0);
+        if (port > 0) startServer(plugin.getConfig().getString("metrics-http-bind", "127.0.0.1"), port);
+
+        int interval = plugin.getConfig().getInt("metrics-file-interval-seconds", 0);
+        if (interval > 0) {
+            File file = new File(plugin.getDataFolder(), "metrics.prom");
+            fileTask = Bukkit.getAsyncScheduler().runAtFixedRate(plugin, t -> writeFile(file), interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    void close() {
+        if (fileTask != null) {
+            fileTask.cancel();
+            fileTask = null;
+        }
+        if (server != null) {
+            server.stop(0);
+            serverThread.shutdownNow();
+            server = null;
+        }
+    }
+
+    private void startServer(String bind, int port) {
+        try {
+            server = HttpServer.create(new InetSocketAddress(bind, port), 0);
+        } catch (IOException e) {
+            plugin.getLogger().severe("Could not start metrics endpoint on " + bind + ":" + port + ": " + e.getMessage());
+            return;
+        }
+        serverThread = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "BonescraftLand-metrics");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(serverThread);
+        server.createContext("/metrics", exchange -> {
+            byte[] body = render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        plugin.getLogger().info("Metrics available at http://" + bind + ":" + port + "/metrics");
+    }
+
+    private void writeFile(File file) {
+        try {
+            WriteBehindWriter.writeAtomically(file.toPath(), render().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not write " + file.getName() + ": " + e.getMessage());
+        }
+    }
+
+    String render() {
+        StringBuilder out = new StringBuilder(4096);
+
+        type(out, "bonescraft_handler_seconds", "summary", "Time spent in protection event handlers.");
+        for (Map.Entry<String, LatencyHistogram> e : metrics.handlers().entrySet()) {
+            summary(out, "bonescraft_handler_seconds", "handler", e.getKey(), e.getValue());
+        }
+
+        type(out, "bonescraft_claim_lookups_total", "counter", "Claim lookups by chunk.");
+        sample(out, "bonescraft_claim_lookups_total", metrics.claimLookups.sum());
+        type(out, "bonescraft_claim_lookup_hits_total", "counter", "Claim lookups that found a claim.");
+        sample(out, "bonescraft_claim_lookup_hits_total", metrics.claimLookupHits.sum());
+
+        type(out, "bonescraft_cache_requests_total", "counter", "Cache requests by cache and result.");
+        cache(out, "permissions", metrics.permissionHits.sum(), metrics.permissionMisses.sum());
+        cache(out, "names", metrics.nameHits.sum(), metrics.nameMisses.sum());
+        cache(out, "transfers", metrics.transferHits.sum(), metrics.transferMisses.sum());
+        cache(out, "decisions", metrics.decisionHits.sum(), metrics.decisionMisses.sum());
+
+        Map<String, Metrics.SaveStats> saves = metrics.saves();
+        type(out, "bonescraft_store_save_seconds", "summary", "Duration of successful saves per data store.");
+        for (Map.Entry<String, Metrics.SaveStats> e : saves.entrySet()) {
+            summary(out, "bonescraft_store_save_seconds", "store", e.getKey(), e.getValue().duration);
+        }
+        type(out, "bonescraft_store_bytes_written_total", "counter", "Bytes written per data store.");
+        for (Map.Entry<String, Metrics.SaveStats> e : saves.entrySet()) {
+            sample(out, "bonescraft_store_bytes_written_total{store=\"" + escape(e.getKey()) + "\"}", e.getValue().bytes.sum());
+        }
+        type(out, "bonescraft_store_save_failures_total", "counter", "Failed saves per data store.");
+        for (Map.Entry<String, Metrics.SaveStats> e : saves.entrySet()) {
+            sample(out, "bonescraft_store_save_failures_total{store=\"" + escape(e.getKey()) + "\"}", e.getValue().failures.sum());
+        }
+        return out.toString();
+    }
+
+    private static void type(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void summary(StringBuilder out, String name, String label, String value, LatencyHistogram h) {
+        String l = label + "=\"" + escape(value) + "\"";
+        for (double q : QUANTILES) {
+            out.append(name).append('{').append(l).append(",quantile=\"").append(q).append("\"} ")
+                    .append(seconds(h.percentile(q))).append('\n');
+        }
+        out.append(name).append("_sum{").append(l).append("} ").append(seconds(h.sum())).append('\n');
+        out.append(name).append("_count{").append(l).append("} ").append(h.count()).append('\n');
+    }
+
+    private static void cache(StringBuilder out, String cache, long hits, long misses) {
+        sample(out, "bonescraft_cache_requests_total{cache=\"" + cache + "\",result=\"hit\"}", hits);
+        sample(out, "bonescraft_cache_requests_total{cache=\"" + cache + "\",result=\"miss\"}", misses);
+    }
+
+    private static void sample(StringBuilder out, String series, long value) {
+        out.append(series).append(' ').append(value).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+
+    private static String escape(String label) {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
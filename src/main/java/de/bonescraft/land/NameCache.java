@@ -0,0 +1,216 @@
+package de.bonescraft.land;
+
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+
+import java.io.*;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Bidirectional name/UUID cache for commands.
+ *
+ * Filled from joins, from the owners and members of existing claims (resolved once in the
+ * background at startup) and from earlier lookups; persisted to names.dat and bounded by
+ * {@code name-cache-size} with least-recently-used eviction. A miss is looked up on an async
+ * thread (usercache, player data, possibly Mojang) and the result is delivered on the global
+ * region thread (the main thread on Paper), so commands never block the tick on name resolution.
+ *
+ * The maps are guarded by the cache's monitor, since commands and joins may arrive on different
+ * region threads on Folia.
+ */
+public class NameCache implements Listener {
+    private static final int MAGIC = 0x424E414D; // "BNAM"
+    private static final int VERSION = 1;
+
+    private final BonescraftLand plugin;
+    private final File file;
+    private final int maxEntries;
+    /** UUID -> name, in access order for LRU eviction. */
+    private final LinkedHashMap<UUID, String> names;
+    /** Lower-case name -> UUID; always the inverse of {@link #names}. */
+    private final Map<String, UUID> uuids = new HashMap<>();
+    private final WriteBehindWriter<byte[]> writer;
+    private final Metrics metrics;
+
+    public NameCache(BonescraftLand plugin) {
+        this.plugin = plugin;
+        this.metrics = plugin.getMetrics();
+        this.file = new File(plugin.getDataFolder(), "names.dat");
+        this.maxEntries = Math.max(100, plugin.getConfig().getInt("name-cache-size", 5000));
+        this.names = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, String> eldest) {
+                if (size() <= maxEntries) return false;
+                uuids.remove(eldest.getValue().toLowerCase(Locale.ROOT), eldest.getKey());
+                return true;
+            }
+        };
+        this.writer = new WriteBehindWriter<>(plugin, file, this::encode, bytes -> bytes);
+        load();
+        for (Player p : Bukkit.getOnlinePlayers()) put(p.getUniqueId(), p.getName());
+        writer.start(plugin.getConfig().getInt("save-interval-seconds", 5));
+    }
+
+    /**
+     * Resolves names for the owners and members of all claims that are not cached yet, in the
+     * background.
+     */
+    public void warmUp(ClaimManager claims) {
+        Set<UUID> missing = new HashSet<>();
+        synchronized (this) {
+            claims.forEachClaim(c -> {
+                if (!names.containsKey(c.owner())) missing.add(c.owner());
+                for (UUID m : c.members().keySet()) if (!names.containsKey(m)) missing.add(m);
+            });
+        }
+        if (!missing.isEmpty()) names(missing, found -> {});
+    }
+
+    /** Cached name without any lookup, or null. */
+    public synchronized String cachedName(UUID uuid) {
+        return names.get(uuid);
+    }
+
+    /** Cached name, or the UUID as a string if the name is not known (yet). */
+    public synchronized String displayName(UUID uuid) {
+        String name = names.get(uuid);
+        return name != null ? name : uuid.toString();
+    }
+
+    /**
+     * Resolves a player name. The callback runs immediately on the calling thread for online and
+     * cached players, otherwise later on the global region thread; it gets {@code null} if no
+     * player with that name has played on this server.
+     */
+    public void resolve(String name, Consumer<UUID> callback) {
+        Player online = Bukkit.getPlayerExact(name);
+        if (online != null) {
+            put(online.getUniqueId(), online.getName());
+            callback.accept(online.getUniqueId());
+            return;
+        }
+        UUID cached;
+        synchronized (this) {
+            cached = uuids.get(name.toLowerCase(Locale.ROOT));
+            if (cached != null) names.get(cached); // touch for LRU
+        }
+        if (cached != null) {
+            metrics.nameHits.increment();
+            callback.accept(cached);
+            return;
+        }
+        metrics.nameMisses.increment();
+        Bukkit.getAsyncScheduler().runNow(plugin, t -> {
+            OfflinePlayer p = Bukkit.getOfflinePlayer(name);
+            boolean known = p.hasPlayedBefore() || p.isOnline();
+            UUID uuid = known ? p.getUniqueId() : null;
+            String exact = known && p.getName() != null ? p.getName() : name;
+            Bukkit.getGlobalRegionScheduler().execute(plugin, () -> {
+                if (uuid != null) put(uuid, exact);
+                callback.accept(uuid);
+            });
+        });
+    }
+
+    /** Resolves one name for display; see {@link #names}. */
+    public void name(UUID uuid, Consumer<String> callback) {
+        names(List.of(uuid), found -> callback.accept(found.getOrDefault(uuid, uuid.toString())));
+    }
+
+    /**
+     * Resolves names for display. The callback gets every name found, immediately if all are
+     * cached and otherwise on the global region thread; unknown players are missing from the map.
+     */
+    public void names(Collection<UUID> ids, Consumer<Map<UUID, String>> callback) {
+        Map<UUID, String> found = new HashMap<>();
+        List<UUID> missing = new ArrayList<>();
+        synchronized (this) {
+            for (UUID id : ids) {
+                String name = names.get(id);
+                if (name != null) found.put(id, name);
+                else missing.add(id);
+            }
+        }
+        metrics.nameHits.add(found.size());
+        metrics.nameMisses.add(missing.size());
+        if (missing.isEmpty()) {
+            callback.accept(found);
+            return;
+        }
+        Bukkit.getAsyncScheduler().runNow(plugin, t -> {
+            Map<UUID, String> looked = new HashMap<>();
+            for (UUID id : missing) {
+                String name = Bukkit.getOfflinePlayer(id).getName();
+                if (name != null) looked.put(id, name);
+            }
+            Bukkit.getGlobalRegionScheduler().execute(plugin, () -> {
+                looked.forEach(this::put);
+                found.putAll(looked);
+                callback.accept(found);
+            });
+        });
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent e) {
+        put(e.getPlayer().getUniqueId(), e.getPlayer().getName());
+    }
+
+    public void close() {
+        writer.close();
+    }
+
+    private synchronized void put(UUID uuid, String name) {
+        String old = names.put(uuid, name);
+        if (name.equals(old)) return;
+        if (old != null) uuids.remove(old.toLowerCase(Locale.ROOT), uuid);
+        // A name can move to another account; drop the stale mapping
+        UUID previous = uuids.put(name.toLowerCase(Locale.ROOT), uuid);
+        if (previous != null && !previous.equals(uuid)) names.remove(previous);
+        writer.markDirty();
+    }
+
+    // ---- persistence ----------------------------------------------------------------------
+
+    /** Layout: {@code int magic, int version, int count, count x (long msb, long lsb, UTF name)}, oldest first. */
+    private synchronized byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(12 + names.size() * 28);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(names.size());
+            for (Map.Entry<UUID, String> e : names.entrySet()) {
+                out.writeLong(e.getKey().getMostSignificantBits());
+                out.writeLong(e.getKey().getLeastSignificantBits());
+                out.writeUTF(e.getValue());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // ByteArrayOutputStream does not throw
+        }
+        return bytes.toByteArray();
+    }
+
+    private void load() {
+        if (!file.isFile()) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("unknown format");
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                UUID uuid = new UUID(in.readLong(), in.readLong());
+                String name = in.readUTF();
+                names.put(uuid, name);
+                uuids.put(name.toLowerCase(Locale.ROOT), uuid);
+            }
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not load names.dat, starting with an empty name cache: " + e.getMessage());
+        }
+    }
+}
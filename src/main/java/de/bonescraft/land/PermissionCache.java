@@ -0,0 +1,115 @@
+package de.bonescraft.land;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-player snapshot of every permission the protection checks need.
+ *
+ * Resolving a permission through LuckPerms is comparatively expensive and the listeners ask
+ * several times per block event, so the answers are computed once on join and refreshed when
+ * LuckPerms recalculates the user (see {@link LuckPermsHook}), on config reload, and on a
+ * periodic fallback timer ({@code permission-refresh-seconds}) for other permission plugins
+ * and op changes.
+ *
+ * A refresh that changes a snapshot drops the cached {@link ProtectionDecisionCache} decisions.
+ *
+ * Snapshots are read from any thread (region threads on Folia). Permissions are only resolved on
+ * the player's own thread: refreshes are scheduled through the player's entity scheduler.
+ */
+public class PermissionCache implements Listener {
+    private final BonescraftLand plugin;
+    private final Map<UUID, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private final Metrics metrics;
+
+    public PermissionCache(BonescraftLand plugin) {
+        this.plugin = plugin;
+        this.metrics = plugin.getMetrics();
+        long ticks = Math.max(1, plugin.getConfig().getInt("permission-refresh-seconds", 60)) * 20L;
+        Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin, t -> refreshAll(), ticks, ticks);
+    }
+
+    /**
+     * @return the cached snapshot; computed on the spot for players that have none yet
+     */
+    public Snapshot get(Player p) {
+        Snapshot s = snapshots.get(p.getUniqueId());
+        if (s != null) {
+            metrics.permissionHits.increment();
+            return s;
+        }
+        metrics.permissionMisses.increment();
+        s = compute(p);
+        // Don't keep snapshots for fake players that will never quit
+        if (p.isOnline()) snapshots.put(p.getUniqueId(), s);
+        return s;
+    }
+
+    public void refresh(Player p) {
+        Snapshot s = compute(p);
+        Snapshot old = snapshots.put(p.getUniqueId(), s);
+        if (old != null && !old.equals(s)) plugin.getProtectionDecisions().invalidate();
+    }
+
+    /** Refreshes the player on their own thread; callable from any thread. */
+    public void refresh(UUID id) {
+        Player p = Bukkit.getPlayer(id);
+        if (p != null) refreshLater(p);
+    }
+
+    /** Schedules a refresh of every online player; callable from any thread. */
+    public void refreshAll() {
+        for (Player p : Bukkit.getOnlinePlayers()) refreshLater(p);
+    }
+
+    private void refreshLater(Player p) {
+        p.getScheduler().run(plugin, t -> refresh(p), null);
+    }
+
+    private Snapshot compute(Player p) {
+        return new Snapshot(
+                p.isOp() || hasPerm(p, "permissions.bypass", "bonescraft.bypass"),
+                hasPerm(p, "permissions.build_anywhere", "bonescraft.build.anywhere"),
+                hasPerm(p, "permissions.ring_build", "bonescraft.ring.build"),
+                hasPerm(p, "permissions.ring_break", "bonescraft.ring.break"),
+                hasPerm(p, "permissions.ring_chest_view", "bonescraft.ring.chest.view"),
+                hasPerm(p, "permissions.ring_chest_take", "bonescraft.ring.chest.take"),
+                plugin.getClaimManager().getMaxClaimSizeFor(p)
+        );
+    }
+
+    private boolean hasPerm(Player p, String key, String def) {
+        return p.hasPermission(plugin.getConfig().getString(key, def));
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onJoin(PlayerJoinEvent e) {
+        refresh(e.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent e) {
+        snapshots.remove(e.getPlayer().getUniqueId());
+    }
+
+    /**
+     * Immutable permission state of one player.
+     */
+    public record Snapshot(boolean bypass, boolean buildAnywhere,
+                           boolean ringBuild, boolean ringBreak,
+                           boolean ringChestView, boolean ringChestTake,
+                           int maxClaimSize) {
+        public boolean unrestricted() {
+            return bypass || buildAnywhere;
+        }
+    }
+}
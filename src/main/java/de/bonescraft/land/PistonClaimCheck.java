@@ -0,0 +1,90 @@
+package de.bonescraft.land;
+
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Decides whether a piston movement crosses a claim border.
+ *
+ * A movement is allowed when every chunk it touches (piston, piston head, each moved block and
+ * its destination) belongs to the same owner, or is wilderness throughout. The touched area is
+ * first reduced to its bounding box in chunk space: if that is a single chunk the movement cannot
+ * cross a border and no claim lookup is needed. Otherwise every distinct chunk is resolved at
+ * most once per event.
+ */
+final class PistonClaimCheck {
+    /** Owner placeholder for unclaimed chunks. */
+    static final Object WILDERNESS = new Object();
+
+    private PistonClaimCheck() {}
+
+    /**
+     * @param head  block the piston head occupies (extend) or leaves (retract)
+     * @param moved blocks moved by the piston
+     * @param dir   direction the moved blocks travel
+     */
+    static boolean crossesClaimBorder(ClaimManager claims, Block piston, Block head, List<Block> moved, BlockFace dir) {
+        int dx = dir.getModX();
+        int dz = dir.getModZ();
+        int pcx = piston.getX() >> 4;
+        int pcz = piston.getZ() >> 4;
+        int hcx = head.getX() >> 4;
+        int hcz = head.getZ() >> 4;
+
+        int minX = Math.min(pcx, hcx), maxX = Math.max(pcx, hcx);
+        int minZ = Math.min(pcz, hcz), maxZ = Math.max(pcz, hcz);
+        for (int i = 0, n = moved.size(); i < n; i++) {
+            Block b = moved.get(i);
+            int x = b.getX();
+            int z = b.getZ();
+            int fromX = x >> 4, toX = (x + dx) >> 4;
+            int fromZ = z >> 4, toZ = (z + dz) >> 4;
+            minX = Math.min(minX, Math.min(fromX, toX));
+            maxX = Math.max(maxX, Math.max(fromX, toX));
+            minZ = Math.min(minZ, Math.min(fromZ, toZ));
+            maxZ = Math.max(maxZ, Math.max(fromZ, toZ));
+        }
+        if (minX == maxX && minZ == maxZ) return false;
+
+        String world = piston.getWorld().getName();
+        int depth = maxZ - minZ + 1;
+        Object[] owners = new Object[(maxX - minX + 1) * depth];
+        Object reference = owner(claims, world, owners, minX, minZ, depth, pcx, pcz);
+        if (owner(claims, world, owners, minX, minZ, depth, hcx, hcz) != reference) return true;
+        for (int i = 0, n = moved.size(); i < n; i++) {
+            Block b = moved.get(i);
+            int x = b.getX();
+            int z = b.getZ();
+            if (owner(claims, world, owners, minX, minZ, depth, x >> 4, z >> 4) != reference) return true;
+            if (owner(claims, world, owners, minX, minZ, depth, (x + dx) >> 4, (z + dz) >> 4) != reference) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Owner of the chunk (or {@link #WILDERNESS}), memoized in the bounding-box array. Owners are
+     * canonicalized to the first UUID instance seen so callers can compare by reference. Also
+     * used by {@link EnvironmentClaimCheck} for explosions.
+     */
+    static Object owner(ClaimManager claims, String world, Object[] owners,
+                                int minX, int minZ, int depth, int cx, int cz) {
+        int slot = (cx - minX) * depth + (cz - minZ);
+        Object o = owners[slot];
+        if (o != null) return o;
+        ClaimManager.Claim c = claims.getClaimAt(world, cx, cz);
+        o = c == null ? WILDERNESS : c.owner();
+        if (o instanceof UUID id) {
+            for (Object known : owners) {
+                if (known != null && known != WILDERNESS && known.equals(id)) {
+                    o = known;
+                    break;
+                }
+            }
+        }
+        owners[slot] = o;
+        return o;
+    }
+}
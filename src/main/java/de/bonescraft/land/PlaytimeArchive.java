@@ -0,0 +1,101 @@
+package de.bonescraft.land;
+
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Read-only view of a finished month, memory-mapped from its {@link PlaytimeMonthFile}.
+ *
+ * Lookups binary-search the sorted UUID columns; leaderboards read the precomputed order by active
+ * time and ranks binary-search it. Players with only idle time are listed last in that order and
+ * are not ranked. Nothing is copied onto the heap, so years of history cost only
+ * page cache.
+ */
+final class PlaytimeArchive {
+    private final YearMonth month;
+    private final int count;
+    private final LongBuffer msb;
+    private final LongBuffer lsb;
+    private final LongBuffer millis;
+    private final LongBuffer idle;
+    private final IntBuffer order;
+    /** Rows with active time: the leading part of {@link #order}. */
+    private final int ranked;
+
+    PlaytimeArchive(YearMonth month, int count, LongBuffer msb, LongBuffer lsb, LongBuffer millis, LongBuffer idle, IntBuffer order) {
+        this.month = month;
+        this.count = count;
+        this.msb = msb;
+        this.lsb = lsb;
+        this.millis = millis;
+        this.idle = idle;
+        this.order = order;
+        this.ranked = countAbove(0);
+    }
+
+    YearMonth month() {
+        return month;
+    }
+
+    /** Number of players with active time in the month. */
+    int size() {
+        return ranked;
+    }
+
+    /** Active time. */
+    long get(UUID player) {
+        int row = find(player);
+        return row < 0 ? 0L : millis.get(row);
+    }
+
+    long getIdle(UUID player) {
+        int row = find(player);
+        return row < 0 ? 0L : idle.get(row);
+    }
+
+    /** 1-based rank in the month, or 0 if the player has no active time there. */
+    int rank(UUID player) {
+        int row = find(player);
+        if (row < 0) return 0;
+        long ms = millis.get(row);
+        return ms == 0 ? 0 : countAbove(ms) + 1;
+    }
+
+    /** Number of players with more active time than {@code ms}. */
+    private int countAbove(long ms) {
+        // order is by active time, descending: find the first entry with no more than ms
+        int lo = 0, hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (millis.get(order.get(mid)) > ms) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    List<PlaytimeTracker.Entry> top(int n) {
+        int limit = Math.min(n, ranked);
+        List<PlaytimeTracker.Entry> out = new ArrayList<>(limit);
+        for (int i = 0; i < limit; i++) {
+            int row = order.get(i);
+            out.add(new PlaytimeTracker.Entry(new UUID(msb.get(row), lsb.get(row)), millis.get(row)));
+        }
+        return out;
+    }
+
+    private int find(UUID player) {
+        int lo = 0, hi = count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = PlaytimeMonthFile.compare(msb.get(mid), lsb.get(mid), player);
+            if (c < 0) lo = mid + 1;
+            else if (c > 0) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+}
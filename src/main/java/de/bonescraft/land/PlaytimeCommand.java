@@ -1,49 +1,164 @@
 package de.bonescraft.land;
 
-import org.bukkit.Bukkit;
-import org.bukkit.OfflinePlayer;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
 
 import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.function.BiConsumer;
 
 public class PlaytimeCommand implements CommandExecutor {
+    private static final int DEFAULT_TOP = 10;
+    private static final int MAX_TOP = 50;
+    private static final int MAX_RANGE_MONTHS = 120;
+
     private final PlaytimeTracker tracker;
+    private final NameCache names;
 
-    public PlaytimeCommand(PlaytimeTracker tracker) {
+    public PlaytimeCommand(PlaytimeTracker tracker, NameCache names) {
         this.tracker = tracker;
+        this.names = names;
     }
 
     @Override
     public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
-        OfflinePlayer target = null;
-        YearMonth month = YearMonth.now();
-
         if (args.length >= 1) {
-            target = Bukkit.getOfflinePlayer(args[0]);
-        } else {
-            if (sender instanceof org.bukkit.entity.Player p) {
-                target = p;
+            switch (args[0].toLowerCase(Locale.ROOT)) {
+                case "top" -> {
+                    return top(sender, args);
+                }
+                case "range" -> {
+                    return range(sender, args);
+                }
+                case "rank" -> {
+                    return rank(sender, args);
+                }
+                default -> {}
             }
         }
 
-        if (target == null) {
-            sender.sendMessage("§cUsage: /playtime [player] [yyyy-MM]");
+        YearMonth month = args.length >= 2 ? parseMonth(sender, args[1]) : YearMonth.now();
+        if (month == null) return true;
+        withTarget(sender, args, 0, "§cUsage: /playtime [player] [yyyy-MM]", (uuid, name) -> {
+            long seconds = tracker.getPlaytimeSeconds(uuid, month);
+            long idle = tracker.getIdleMs(uuid, month) / 1000;
+            sender.sendMessage("§aPlaytime for §e" + name + " §ain §e" + month + "§a: §b" + TimeUtil.formatDuration(seconds)
+                    + " §aactive, §7" + TimeUtil.formatDuration(idle) + " idle");
+        });
+        return true;
+    }
+
+    /** /playtime top [yyyy-MM] [n] */
+    private boolean top(CommandSender sender, String[] args) {
+        YearMonth month = YearMonth.now();
+        int n = DEFAULT_TOP;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].indexOf('-') > 0) {
+                month = parseMonth(sender, args[i]);
+                if (month == null) return true;
+            } else {
+                try {
+                    n = Math.max(1, Math.min(MAX_TOP, Integer.parseInt(args[i])));
+                } catch (NumberFormatException e) {
+                    sender.sendMessage("§cUsage: /playtime top [yyyy-MM] [n]");
+                    return true;
+                }
+            }
+        }
+        List<PlaytimeTracker.Entry> top = tracker.getTop(month, n);
+        if (top.isEmpty()) {
+            sender.sendMessage("§7No playtime recorded in " + month + ".");
             return true;
         }
-
-        if (args.length >= 2) {
-            try {
-                month = YearMonth.parse(args[1]);
-            } catch (Exception e) {
-                sender.sendMessage("§cInvalid month format. Use yyyy-MM (e.g. 2026-02)");
-                return true;
+        YearMonth shown = month;
+        names.names(top.stream().map(PlaytimeTracker.Entry::player).toList(), found -> {
+            sender.sendMessage("§aTop " + top.size() + " in §e" + shown + "§a:");
+            int place = 1;
+            for (PlaytimeTracker.Entry e : top) {
+                String name = found.getOrDefault(e.player(), e.player().toString());
+                sender.sendMessage("§7" + place++ + ". §e" + name + " §7- §b" + TimeUtil.formatDuration(e.millis() / 1000));
             }
+        });
+        return true;
+    }
+
+    /** /playtime range <from> <to> [player] */
+    private boolean range(CommandSender sender, String[] args) {
+        if (args.length < 3) {
+            sender.sendMessage("§cUsage: /playtime range <yyyy-MM> <yyyy-MM> [player]");
+            return true;
         }
+        YearMonth from = parseMonth(sender, args[1]);
+        if (from == null) return true;
+        YearMonth to = parseMonth(sender, args[2]);
+        if (to == null) return true;
+        if (to.isBefore(from)) {
+            YearMonth t = from;
+            from = to;
+            to = t;
+        }
+        if (from.plusMonths(MAX_RANGE_MONTHS).isBefore(to)) {
+            sender.sendMessage("§cRange too large (max " + MAX_RANGE_MONTHS + " months).");
+            return true;
+        }
+        YearMonth first = from, last = to;
+        withTarget(sender, args, 3, "§cUsage: /playtime range <yyyy-MM> <yyyy-MM> <player>", (uuid, name) -> {
+            long seconds = tracker.getRangeMs(uuid, first, last) / 1000;
+            long idle = tracker.getIdleRangeMs(uuid, first, last) / 1000;
+            sender.sendMessage("§aPlaytime for §e" + name + " §afrom §e" + first + " §ato §e" + last
+                    + "§a: §b" + TimeUtil.formatDuration(seconds) + " §aactive, §7" + TimeUtil.formatDuration(idle) + " idle");
+        });
+        return true;
+    }
 
-        long seconds = tracker.getPlaytimeSeconds(target.getUniqueId(), month);
-        sender.sendMessage("§aPlaytime for §e" + target.getName() + " §ain §e" + month + "§a: §b" + tracker.formatDuration(seconds));
+    /** /playtime rank [player] [yyyy-MM] */
+    private boolean rank(CommandSender sender, String[] args) {
+        int monthArg = args.length >= 2 && args[args.length - 1].indexOf('-') > 0 ? args.length - 1 : -1;
+        YearMonth month = monthArg > 0 ? parseMonth(sender, args[monthArg]) : YearMonth.now();
+        if (month == null) return true;
+        withTarget(sender, args, monthArg == 1 ? args.length : 1, "§cUsage: /playtime rank <player> [yyyy-MM]", (uuid, name) -> {
+            int rank = tracker.getRank(uuid, month);
+            if (rank == 0) {
+                sender.sendMessage("§e" + name + " §7has no active playtime in " + month + ".");
+                return;
+            }
+            sender.sendMessage("§e" + name + " §ais §b#" + rank + " §aof §b" + tracker.getRankedCount(month)
+                    + " §ain §e" + month);
+        });
         return true;
     }
+
+    /**
+     * Runs the action for the player named at args[index], or for the sender themselves if there
+     * is no such argument. Names are resolved through the {@link NameCache}, so the action may run
+     * a moment later.
+     */
+    private void withTarget(CommandSender sender, String[] args, int index, String usage, BiConsumer<UUID, String> action) {
+        if (args.length > index) {
+            names.resolve(args[index], uuid -> {
+                if (uuid == null) sender.sendMessage("§cPlayer not found.");
+                else action.accept(uuid, names.displayName(uuid));
+            });
+            return;
+        }
+        if (sender instanceof Player p) {
+            action.accept(p.getUniqueId(), p.getName());
+            return;
+        }
+        sender.sendMessage(usage);
+    }
+
+    private static YearMonth parseMonth(CommandSender sender, String raw) {
+        try {
+            return YearMonth.parse(raw);
+        } catch (DateTimeParseException e) {
+            sender.sendMessage("§cInvalid month format. Use yyyy-MM (e.g. 2026-02)");
+            return null;
+        }
+    }
 }
@@ -0,0 +1,197 @@
+package de.bonescraft.land;
+
+import java.time.YearMonth;
+import java.util.*;
+
+/**
+ * In-memory playtime totals keyed by (player, month).
+ *
+ * Every UUID gets a small integer id once; each month is a pair of dense {@code long[]} of active
+ * and idle milliseconds indexed by that id, so adding time is an array increment without boxing.
+ * Leaderboards and ranks only count active time. Months carry a dirty
+ * flag so only changed months are written back. Only used under the tracker's lock; snapshots
+ * handed to the writer thread are copies.
+ */
+final class PlaytimeLedger {
+    private final Map<UUID, Integer> ids = new HashMap<>();
+    private UUID[] players = new UUID[64];
+    private int playerCount;
+    private final Map<YearMonth, Month> months = new TreeMap<>();
+
+    private static final class Month {
+        long[] millis = new long[0];
+        long[] idle = new long[0];
+        boolean dirty;
+        /** {@link #rankKey} of every non-zero entry, ascending; null after a change. */
+        long[] ranked;
+    }
+
+    /**
+     * Copy of one month for writing: parallel arrays of active and idle time for the players with
+     * any time in the month.
+     */
+    record MonthSnapshot(YearMonth month, UUID[] players, long[] millis, long[] idle) {}
+
+    int id(UUID player) {
+        Integer id = ids.get(player);
+        if (id != null) return id;
+        if (playerCount == players.length) players = Arrays.copyOf(players, playerCount * 2);
+        players[playerCount] = player;
+        ids.put(player, playerCount);
+        return playerCount++;
+    }
+
+    void add(UUID player, YearMonth month, long ms, boolean idle) {
+        if (ms <= 0) return;
+        Month m = month(month);
+        int id = id(player);
+        grow(m, id);
+        if (idle) {
+            m.idle[id] += ms;
+        } else {
+            m.millis[id] += ms;
+            m.ranked = null;
+        }
+        m.dirty = true;
+    }
+
+    /** Active time. */
+    long get(UUID player, YearMonth month) {
+        Integer id = ids.get(player);
+        if (id == null) return 0L;
+        Month m = months.get(month);
+        return m == null || id >= m.millis.length ? 0L : m.millis[id];
+    }
+
+    long getIdle(UUID player, YearMonth month) {
+        Integer id = ids.get(player);
+        if (id == null) return 0L;
+        Month m = months.get(month);
+        return m == null || id >= m.idle.length ? 0L : m.idle[id];
+    }
+
+    /** Replaces a month with data read from disk; the month is not marked dirty. */
+    void load(MonthSnapshot snapshot) {
+        Month m = month(snapshot.month());
+        for (int i = 0; i < snapshot.players().length; i++) {
+            int id = id(snapshot.players()[i]);
+            grow(m, id);
+            m.millis[id] = snapshot.millis()[i];
+            m.idle[id] = snapshot.idle()[i];
+        }
+        m.ranked = null;
+    }
+
+    private void grow(Month m, int id) {
+        if (id < m.millis.length) return;
+        int length = Math.max(id + 1, playerCount + 16);
+        m.millis = Arrays.copyOf(m.millis, length);
+        m.idle = Arrays.copyOf(m.idle, length);
+    }
+
+    boolean has(YearMonth month) {
+        return months.containsKey(month);
+    }
+
+    /** Players with the most active time in the month, highest first. */
+    List<PlaytimeTracker.Entry> top(YearMonth month, int n) {
+        Month m = months.get(month);
+        if (m == null) return List.of();
+        long[] ranked = ranked(m);
+        List<PlaytimeTracker.Entry> out = new ArrayList<>(Math.min(n, ranked.length));
+        for (int i = ranked.length - 1; i >= 0 && out.size() < n; i--) {
+            int id = (int) ranked[i];
+            out.add(new PlaytimeTracker.Entry(players[id], m.millis[id]));
+        }
+        return out;
+    }
+
+    /** 1-based rank in the month, or 0 if the player has no active time there. */
+    int rank(UUID player, YearMonth month) {
+        Integer id = ids.get(player);
+        Month m = months.get(month);
+        if (id == null || m == null || id >= m.millis.length || m.millis[id] == 0) return 0;
+        long[] ranked = ranked(m);
+        // Entries above every key with the same playtime are the ones with more playtime
+        long bound = rankKey(m.millis[id], -1);
+        int lo = 0, hi = ranked.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (ranked[mid] <= bound) lo = mid + 1;
+            else hi = mid;
+        }
+        return ranked.length - lo + 1;
+    }
+
+    /** Number of players with active time in the month. */
+    int size(YearMonth month) {
+        Month m = months.get(month);
+        return m == null ? 0 : ranked(m).length;
+    }
+
+    /**
+     * Sort key ordering (playtime, row) with a plain {@code long} comparison. Playtime is capped
+     * at 2^32 - 1 ms (49 days, more than a month); the sign bit is flipped so the unsigned
+     * playtime sorts correctly as a signed long.
+     */
+    static long rankKey(long millis, int row) {
+        return ((Math.min(millis, 0xFFFFFFFFL) << 32) | (row & 0xFFFFFFFFL)) ^ Long.MIN_VALUE;
+    }
+
+    private static long[] ranked(Month m) {
+        if (m.ranked != null) return m.ranked;
+        int n = 0;
+        for (long v : m.millis) if (v != 0) n++;
+        long[] keys = new long[n];
+        int j = 0;
+        for (int id = 0; id < m.millis.length; id++) {
+            if (m.millis[id] != 0) keys[j++] = rankKey(m.millis[id], id);
+        }
+        Arrays.sort(keys);
+        return m.ranked = keys;
+    }
+
+    Set<YearMonth> months() {
+        return Collections.unmodifiableSet(months.keySet());
+    }
+
+    /**
+     * Copies every dirty month and clears its flag. A month whose write fails must be handed back
+     * to {@link #markDirty}.
+     */
+    List<MonthSnapshot> takeDirty() {
+        List<MonthSnapshot> out = new ArrayList<>();
+        for (Map.Entry<YearMonth, Month> e : months.entrySet()) {
+            Month m = e.getValue();
+            if (!m.dirty) continue;
+            m.dirty = false;
+            out.add(snapshot(e.getKey(), m));
+        }
+        return out;
+    }
+
+    void markDirty(YearMonth month) {
+        Month m = months.get(month);
+        if (m != null) m.dirty = true;
+    }
+
+    private MonthSnapshot snapshot(YearMonth month, Month m) {
+        int n = 0;
+        for (int i = 0; i < m.millis.length; i++) if (m.millis[i] != 0 || m.idle[i] != 0) n++;
+        UUID[] ids = new UUID[n];
+        long[] active = new long[n];
+        long[] idle = new long[n];
+        int j = 0;
+        for (int i = 0; i < m.millis.length; i++) {
+            if (m.millis[i] == 0 && m.idle[i] == 0) continue;
+            ids[j] = players[i];
+            active[j] = m.millis[i];
+            idle[j++] = m.idle[i];
+        }
+        return new MonthSnapshot(month, ids, active, idle);
+    }
+
+    private Month month(YearMonth month) {
+        return months.computeIfAbsent(month, k -> new Month());
+    }
+}
@@ -0,0 +1,157 @@
+package de.bonescraft.land;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * On-disk format for one month of playtime: {@code playtime/<yyyy-MM>.dat}.
+ *
+ * Version 3 is columnar: {@code int magic, int version, int count, long[count] msb,
+ * long[count] lsb, long[count] active, long[count] idle, int[count] order}. Rows are sorted by UUID
+ * so a player is found by binary search; {@code order} lists the rows by active time, highest
+ * first, so leaderboards and ranks need no scan. The fixed layout lets finished months be
+ * memory-mapped as a {@link PlaytimeArchive}. Each month is its own file, so a flush only rewrites
+ * the months that changed. Version 2 files (no idle column) and version 1 files (unsorted UUIDs
+ * and millis, no order) are still read; their time counts as active, since idle time was not
+ * tracked when they were written.
+ */
+final class PlaytimeMonthFile {
+    private static final int MAGIC = 0x4250544D; // "BPTM"
+    static final int VERSION = 3;
+    private static final int ROW = 36;
+    private static final int HEADER = 12;
+    private static final String SUFFIX = ".dat";
+
+    private PlaytimeMonthFile() {}
+
+    static File file(File dir, YearMonth month) {
+        return new File(dir, month + SUFFIX);
+    }
+
+    /** @return the month encoded in the file name, or null for other files */
+    static YearMonth monthOf(File file) {
+        String name = file.getName();
+        if (!name.endsWith(SUFFIX)) return null;
+        try {
+            return YearMonth.parse(name.substring(0, name.length() - SUFFIX.length()));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    static int version(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readInt() != MAGIC) throw new IOException(file.getName() + " is not a playtime file");
+            return in.readInt();
+        }
+    }
+
+    static PlaytimeLedger.MonthSnapshot read(File file, YearMonth month) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC) throw new IOException(file.getName() + " is not a playtime file");
+            int version = in.readInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException(file.getName() + " has unsupported version " + version);
+            }
+            int count = in.readInt();
+            UUID[] players = new UUID[count];
+            long[] millis = new long[count];
+            long[] idle = new long[count];
+            if (version == 1) {
+                for (int i = 0; i < count; i++) players[i] = new UUID(in.readLong(), in.readLong());
+            } else {
+                long[] msb = new long[count];
+                for (int i = 0; i < count; i++) msb[i] = in.readLong();
+                for (int i = 0; i < count; i++) players[i] = new UUID(msb[i], in.readLong());
+            }
+            for (int i = 0; i < count; i++) millis[i] = in.readLong();
+            if (version >= 3) {
+                for (int i = 0; i < count; i++) idle[i] = in.readLong();
+            }
+            return new PlaytimeLedger.MonthSnapshot(month, players, millis, idle);
+        }
+    }
+
+    /** Maps a file of the current version read-only. */
+    static PlaytimeArchive map(File file, YearMonth month) throws IOException {
+        MappedByteBuffer buf;
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+        if (buf.limit() < HEADER || buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION) {
+            throw new IOException(file.getName() + " is not a version " + VERSION + " playtime file");
+        }
+        int count = buf.getInt(8);
+        if (count < 0 || buf.limit() != HEADER + (long) count * ROW) {
+            throw new IOException(file.getName() + " is truncated");
+        }
+        int msb = HEADER;
+        int lsb = msb + count * 8;
+        int millis = lsb + count * 8;
+        int idle = millis + count * 8;
+        int order = idle + count * 8;
+        return new PlaytimeArchive(month, count,
+                buf.slice(msb, count * 8).asLongBuffer(),
+                buf.slice(lsb, count * 8).asLongBuffer(),
+                buf.slice(millis, count * 8).asLongBuffer(),
+                buf.slice(idle, count * 8).asLongBuffer(),
+                buf.slice(order, count * 4).asIntBuffer());
+    }
+
+    /**
+     * Replaces the month's file atomically. Runs on the writer thread.
+     *
+     * @return bytes written
+     */
+    static int write(File dir, PlaytimeLedger.MonthSnapshot snapshot) throws IOException {
+        UUID[] players = snapshot.players();
+        long[] millis = snapshot.millis();
+        long[] idle = snapshot.idle();
+        int count = players.length;
+
+        Integer[] rows = new Integer[count];
+        for (int i = 0; i < count; i++) rows[i] = i;
+        Arrays.sort(rows, (a, b) -> compare(players[a].getMostSignificantBits(), players[a].getLeastSignificantBits(), players[b]));
+        int[] order = rankOrder(millis, rows);
+
+        ByteBuffer buf = ByteBuffer.allocate(HEADER + count * ROW);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(count);
+        for (Integer r : rows) buf.putLong(players[r].getMostSignificantBits());
+        for (Integer r : rows) buf.putLong(players[r].getLeastSignificantBits());
+        for (Integer r : rows) buf.putLong(millis[r]);
+        for (Integer r : rows) buf.putLong(idle[r]);
+        for (int o : order) buf.putInt(o);
+        Files.createDirectories(dir.toPath());
+        WriteBehindWriter.writeAtomically(file(dir, snapshot.month()).toPath(), buf.array());
+        return buf.capacity();
+    }
+
+    /**
+     * Row positions (in the sorted file) ordered by active time, highest first.
+     *
+     * @param rows source index of each sorted row
+     */
+    private static int[] rankOrder(long[] millis, Integer[] rows) {
+        int count = rows.length;
+        long[] packed = new long[count];
+        for (int row = 0; row < count; row++) packed[row] = PlaytimeLedger.rankKey(millis[rows[row]], row);
+        Arrays.sort(packed);
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) order[i] = (int) packed[count - 1 - i];
+        return order;
+    }
+
+    /** Orders UUIDs by most, then least significant bits (signed), as stored in the file. */
+    static int compare(long msb, long lsb, UUID other) {
+        int c = Long.compare(msb, other.getMostSignificantBits());
+        return c != 0 ? c : Long.compare(lsb, other.getLeastSignificantBits());
+    }
+}
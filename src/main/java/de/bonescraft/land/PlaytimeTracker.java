@@ -1,57 +1,197 @@
 package de.bonescraft.land;
 
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
 import org.bukkit.Bukkit;
-import org.bukkit.OfflinePlayer;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
 
 import java.io.File;
 import java.io.IOException;
+import java.time.Instant;
 import java.time.YearMonth;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.UUID;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Tracks playtime per player and month, split into active and idle time.
+ *
+ * Months that were already over when the plugin started are memory-mapped read-only
+ * ({@link PlaytimeArchive}); the current month (and any month reached while running) lives in a
+ * {@link PlaytimeLedger}. Every {@code playtime-save-interval-seconds} the time
+ * online players have accumulated since the last checkpoint is credited to the ledger, and the
+ * months that changed are written to {@code playtime/<yyyy-MM>.dat} on a background thread, so a
+ * crash loses at most one interval. A session spanning midnight at the end of a month is split
+ * between the two months. An existing playtime.yml is imported once on first start.
+ *
+ * Sessions are credited as active time until the {@link ActivitySampler} reports a player as
+ * idle, and as idle time from then on until it reports activity again. Leaderboards and ranks
+ * count active time only.
+ *
+ * Sessions and the ledger are guarded by the tracker's monitor: on Folia, joins, quits, commands
+ * and the flush timer run on different threads. Archives are immutable once loaded.
+ */
 public class PlaytimeTracker {
     private final BonescraftLand plugin;
-    private final File file;
-    private final YamlConfiguration yml;
-
-    private final Map<UUID, Long> sessionStart = new HashMap<>();
+    private final File dir;
+    private final PlaytimeLedger ledger = new PlaytimeLedger();
+    private final NavigableMap<YearMonth, PlaytimeArchive> archives = new TreeMap<>();
+    private final ZoneId zone = ZoneId.systemDefault();
+    /** Online players -> time (epoch ms) up to which their session has been credited. */
+    private final Map<UUID, Long> checkpoints = new HashMap<>();
+    /** Online players currently credited as idle. */
+    private final Set<UUID> idle = new HashSet<>();
+    private final ExecutorService io;
+    /** Months whose background write failed; marked dirty again by the next flush. */
+    private final Queue<YearMonth> failed = new ConcurrentLinkedQueue<>();
+    private ScheduledTask flushTask;
 
     public PlaytimeTracker(BonescraftLand plugin) {
         this.plugin = plugin;
-        this.file = new File(plugin.getDataFolder(), "playtime.yml");
-        this.yml = YamlConfiguration.loadConfiguration(file);
+        this.dir = new File(plugin.getDataFolder(), "playtime");
+        this.io = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "BonescraftLand-playtime");
+            t.setDaemon(true);
+            return t;
+        });
+        if (dir.isDirectory()) load();
+        else importYaml();
+
+        for (Player p : Bukkit.getOnlinePlayers()) onJoin(p.getUniqueId()); // after /reload
+        long ticks = Math.max(1, plugin.getConfig().getInt("playtime-save-interval-seconds", 60)) * 20L;
+        this.flushTask = Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin, t -> flush(false), ticks, ticks);
+    }
+
+    public synchronized void onJoin(UUID uuid) {
+        checkpoints.put(uuid, System.currentTimeMillis());
+    }
+
+    public synchronized void onQuit(UUID uuid) {
+        Long from = checkpoints.remove(uuid);
+        boolean wasIdle = idle.remove(uuid);
+        if (from != null) credit(uuid, from, System.currentTimeMillis(), wasIdle);
     }
 
-    public void markJoin(UUID uuid) {
-        sessionStart.put(uuid, System.currentTimeMillis());
+    /**
+     * Switches an online player between active and idle. The session up to {@code at} is
+     * credited in the previous state.
+     */
+    public synchronized void setIdle(UUID uuid, boolean isIdle, long at) {
+        Long from = checkpoints.get(uuid);
+        if (from == null || idle.contains(uuid) == isIdle) return;
+        if (at > from) {
+            credit(uuid, from, at, !isIdle);
+            checkpoints.put(uuid, at);
+        }
+        if (isIdle) idle.add(uuid);
+        else idle.remove(uuid);
     }
 
-    public void markQuit(UUID uuid) {
-        Long start = sessionStart.remove(uuid);
-        if (start == null) return;
-        long delta = System.currentTimeMillis() - start;
-        addPlaytime(uuid, YearMonth.now().toString(), delta);
+    /** One leaderboard line. */
+    public record Entry(UUID player, long millis) {}
+
+    /**
+     * Active playtime in the month, including the part of a running session not credited yet.
+     */
+    public synchronized long getPlaytimeMs(UUID uuid, YearMonth month) {
+        long total;
+        if (ledger.has(month)) {
+            total = ledger.get(uuid, month);
+        } else {
+            PlaytimeArchive archive = archives.get(month);
+            total = archive == null ? 0L : archive.get(uuid);
+        }
+        return idle.contains(uuid) ? total : total + uncredited(uuid, month);
     }
 
-    public void flushAllOnlineSessions() {
-        for (UUID uuid : sessionStart.keySet().toArray(new UUID[0])) {
-            markQuit(uuid);
-            markJoin(uuid);
+    /**
+     * Idle playtime in the month, including the part of a running session not credited yet.
+     */
+    public synchronized long getIdleMs(UUID uuid, YearMonth month) {
+        long total;
+        if (ledger.has(month)) {
+            total = ledger.getIdle(uuid, month);
+        } else {
+            PlaytimeArchive archive = archives.get(month);
+            total = archive == null ? 0L : archive.getIdle(uuid);
         }
-        save();
+        return idle.contains(uuid) ? total + uncredited(uuid, month) : total;
+    }
+
+    /** The part of a running session since its checkpoint that falls into the month. */
+    private long uncredited(UUID uuid, YearMonth month) {
+        Long from = checkpoints.get(uuid);
+        if (from == null) return 0L;
+        long start = Math.max(from, monthStart(month));
+        long end = Math.min(System.currentTimeMillis(), monthStart(month.plusMonths(1)));
+        return Math.max(0L, end - start);
+    }
+
+    public long getPlaytimeSeconds(UUID uuid, YearMonth month) {
+        return getPlaytimeMs(uuid, month) / 1000;
+    }
+
+    /**
+     * Whether the player is online or has any playtime, active or idle, from the month up to now.
+     */
+    public synchronized boolean seenSince(UUID uuid, YearMonth from) {
+        if (checkpoints.containsKey(uuid)) return true;
+        for (YearMonth m = YearMonth.now(zone); !m.isBefore(from); m = m.minusMonths(1)) {
+            if (getPlaytimeMs(uuid, m) > 0 || getIdleMs(uuid, m) > 0) return true;
+        }
+        return false;
+    }
+
+    /** The earliest month with playtime data, or null if nothing was recorded yet. */
+    public synchronized YearMonth getFirstMonth() {
+        YearMonth first = archives.isEmpty() ? null : archives.firstKey();
+        for (YearMonth m : ledger.months()) {
+            if (first == null || m.isBefore(first)) first = m;
+        }
+        return first;
+    }
+
+    /** Total active playtime over the months from..to, both inclusive. */
+    public long getRangeMs(UUID uuid, YearMonth from, YearMonth to) {
+        long total = 0;
+        for (YearMonth m = from; !m.isAfter(to); m = m.plusMonths(1)) total += getPlaytimeMs(uuid, m);
+        return total;
+    }
+
+    /** Total idle playtime over the months from..to, both inclusive. */
+    public long getIdleRangeMs(UUID uuid, YearMonth from, YearMonth to) {
+        long total = 0;
+        for (YearMonth m = from; !m.isAfter(to); m = m.plusMonths(1)) total += getIdleMs(uuid, m);
+        return total;
     }
 
-    private void addPlaytime(UUID uuid, String ym, long ms) {
-        String path = uuid.toString() + "." + ym;
-        long current = yml.getLong(path, 0L);
-        yml.set(path, current + ms);
-        save();
+    /**
+     * Players with the most active playtime in the month, highest first. For months still tracked, time
+     * since the last save interval is not included yet.
+     */
+    public synchronized List<Entry> getTop(YearMonth month, int n) {
+        if (ledger.has(month)) return ledger.top(month, n);
+        PlaytimeArchive archive = archives.get(month);
+        return archive == null ? List.of() : archive.top(n);
     }
 
-    public long getPlaytimeMs(OfflinePlayer p, String ym) {
-        return yml.getLong(p.getUniqueId().toString() + "." + ym, 0L);
+    /** 1-based rank by active playtime in the month, or 0 if the player has none there. */
+    public synchronized int getRank(UUID uuid, YearMonth month) {
+        if (ledger.has(month)) return ledger.rank(uuid, month);
+        PlaytimeArchive archive = archives.get(month);
+        return archive == null ? 0 : archive.rank(uuid);
+    }
+
+    /** Number of players with active playtime in the month. */
+    public synchronized int getRankedCount(YearMonth month) {
+        if (ledger.has(month)) return ledger.size(month);
+        PlaytimeArchive archive = archives.get(month);
+        return archive == null ? 0 : archive.size();
     }
 
     public static String formatDuration(long ms) {
@@ -62,11 +202,122 @@ public class PlaytimeTracker {
         return String.format("%dh %dm %ds", hours, minutes, seconds);
     }
 
-    private void save() {
+    /**
+     * Credits all running sessions and writes every changed month synchronously. Used from
+     * onDisable.
+     */
+    public void close() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        io.shutdown();
         try {
-            yml.save(file);
-        } catch (IOException e) {
-            plugin.getLogger().warning("Could not save playtime.yml: " + e.getMessage());
+            if (!io.awaitTermination(30, TimeUnit.SECONDS)) {
+                plugin.getLogger().warning("Timed out waiting for pending playtime writes");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush(true);
+    }
+
+    // ---- crediting ------------------------------------------------------------------------
+
+    /** Adds [from, to) to the ledger as active or idle time, split at month boundaries. */
+    private void credit(UUID uuid, long from, long to, boolean isIdle) {
+        while (from < to) {
+            YearMonth month = YearMonth.from(Instant.ofEpochMilli(from).atZone(zone));
+            long end = Math.min(to, monthStart(month.plusMonths(1)));
+            ledger.add(uuid, month, end - from, isIdle);
+            from = end;
+        }
+    }
+
+    private long monthStart(YearMonth month) {
+        return month.atDay(1).atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    // ---- persistence ----------------------------------------------------------------------
+
+    /**
+     * Checkpoints online sessions and hands the changed months to the writer thread.
+     *
+     * @param sync write on the calling thread (shutdown) instead of the writer thread
+     */
+    private synchronized void flush(boolean sync) {
+        for (YearMonth m; (m = failed.poll()) != null; ) ledger.markDirty(m);
+        long now = System.currentTimeMillis();
+        for (Map.Entry<UUID, Long> e : checkpoints.entrySet()) {
+            credit(e.getKey(), e.getValue(), now, idle.contains(e.getKey()));
+            e.setValue(now);
+        }
+        List<PlaytimeLedger.MonthSnapshot> dirty = ledger.takeDirty();
+        if (dirty.isEmpty()) return;
+        if (sync) write(dirty);
+        else io.execute(() -> write(dirty));
+    }
+
+    private void write(List<PlaytimeLedger.MonthSnapshot> months) {
+        Metrics.SaveStats stats = plugin.getMetrics().save("playtime");
+        for (PlaytimeLedger.MonthSnapshot m : months) {
+            long start = System.nanoTime();
+            try {
+                stats.success(start, PlaytimeMonthFile.write(dir, m));
+            } catch (IOException e) {
+                stats.failure();
+                failed.add(m.month());
+                plugin.getLogger().severe("Could not save playtime for " + m.month() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void load() {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        YearMonth current = YearMonth.now(zone);
+        for (File f : files) {
+            YearMonth month = PlaytimeMonthFile.monthOf(f);
+            if (month == null) continue;
+            try {
+                if (!month.isBefore(current)) {
+                    ledger.load(PlaytimeMonthFile.read(f, month));
+                    continue;
+                }
+                if (PlaytimeMonthFile.version(f) < PlaytimeMonthFile.VERSION) {
+                    PlaytimeMonthFile.write(dir, PlaytimeMonthFile.read(f, month)); // upgrade to the current layout
+                }
+                archives.put(month, PlaytimeMonthFile.map(f, month));
+            } catch (IOException e) {
+                plugin.getLogger().severe("Could not load " + f.getName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void importYaml() {
+        File yml = new File(plugin.getDataFolder(), "playtime.yml");
+        if (yml.isFile()) {
+            YamlConfiguration old = YamlConfiguration.loadConfiguration(yml);
+            int entries = 0;
+            for (String key : old.getKeys(false)) {
+                ConfigurationSection sec = old.getConfigurationSection(key);
+                if (sec == null) continue;
+                UUID uuid;
+                try {
+                    uuid = UUID.fromString(key);
+                } catch (IllegalArgumentException e) {
+                    continue;
+                }
+                for (String ym : sec.getKeys(false)) {
+                    try {
+                        ledger.add(uuid, YearMonth.parse(ym), sec.getLong(ym), false);
+                        entries++;
+                    } catch (DateTimeParseException ignored) {}
+                }
+            }
+            write(ledger.takeDirty()); // failed months are retried by the next flush
+            plugin.getLogger().info("Imported " + entries + " playtime entries from playtime.yml into playtime/");
         }
+        dir.mkdirs();
     }
 }
@@ -0,0 +1,126 @@
+package de.bonescraft.land;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What a player may do in a chunk, as a bitmask of {@link #BUILD}, {@link #BREAK}, {@link #VIEW},
+ * {@link #TAKE} and {@link #USE}: the bypass permissions, the claim at the chunk, the player's trust
+ * level there and their ring permissions combined.
+ *
+ * A player building or mining asks for the same chunk over and over, so the last decisions are
+ * kept per player in a direct-mapped array of {@value #SLOTS} packed {@code long}s (chunk and mask).
+ * Any claim or trust change and any changed permission snapshot bumps one global epoch; a player
+ * whose decisions are from an older epoch starts over. A repeated decision costs a map lookup for
+ * the player and one array read and compare, without allocation.
+ *
+ * Container ownership is per block and not part of the mask: {@link #VIEW} and {@link #TAKE} only
+ * say what trust and rings allow, the owner of a container may use it regardless.
+ */
+final class ProtectionDecisionCache implements Listener, ClaimManager.ChangeListener {
+    static final int BUILD = 1;
+    static final int BREAK = 2;
+    static final int VIEW = 4;
+    static final int TAKE = 8;
+    /** Doors, buttons and the like: anywhere in claims, and in the wilderness with bypass. */
+    static final int USE = 16;
+    private static final int ALL = BUILD | BREAK | VIEW | TAKE | USE;
+    private static final long VALID = 0x80;
+    private static final int SLOTS = 16;
+
+    private final BonescraftLand plugin;
+    private final ClaimManager claims;
+    private final Map<UUID, Decisions> players = new ConcurrentHashMap<>();
+    private final AtomicInteger epoch = new AtomicInteger();
+    private final LongAdder hits;
+    private final LongAdder misses;
+
+    ProtectionDecisionCache(BonescraftLand plugin, ClaimManager claims) {
+        this.plugin = plugin;
+        this.claims = claims;
+        this.hits = plugin.getMetrics().decisionHits;
+        this.misses = plugin.getMetrics().decisionMisses;
+        claims.addChangeListener(this);
+    }
+
+    /** @return the player's mask for the chunk at {@code loc} */
+    int get(Player p, Location loc) {
+        World world = loc.getWorld();
+        if (world == null) return compute(p, null, 0, 0);
+        int cx = loc.getBlockX() >> 4;
+        int cz = loc.getBlockZ() >> 4;
+        Decisions d = players.get(p.getUniqueId());
+        if (d == null) {
+            // Don't keep decisions for fake players that will never quit
+            if (!p.isOnline()) return compute(p, world, cx, cz);
+            d = players.computeIfAbsent(p.getUniqueId(), k -> new Decisions());
+        }
+        // Read before computing: a change meanwhile leaves the new entry in an outdated epoch
+        int e = epoch.get();
+        if (d.epoch != e || d.world != world) {
+            Arrays.fill(d.entries, 0L);
+            d.epoch = e;
+            d.world = world;
+        }
+        long key = ((long) (cx & 0x3FFFFF) << 22) | (cz & 0x3FFFFF);
+        int slot = (int) (key ^ (key >>> 22)) & (SLOTS - 1);
+        long entry = d.entries[slot];
+        if ((entry & VALID) != 0 && entry >>> 8 == key) {
+            hits.increment();
+            return (int) entry & ALL;
+        }
+        misses.increment();
+        int mask = compute(p, world, cx, cz);
+        d.entries[slot] = key << 8 | VALID | mask;
+        return mask;
+    }
+
+    /** Drops every cached decision, e.g. after a permission change. */
+    void invalidate() {
+        epoch.incrementAndGet();
+    }
+
+    @Override
+    public void claimsChanged(String world, int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ) {
+        invalidate();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent e) {
+        players.remove(e.getPlayer().getUniqueId());
+    }
+
+    private int compute(Player p, World world, int cx, int cz) {
+        PermissionCache.Snapshot perms = plugin.getPermissionCache().get(p);
+        if (perms.unrestricted()) return ALL;
+        ClaimManager.Claim claim = world == null ? null : claims.getClaimAt(world.getName(), cx, cz);
+        if (claim == null) return 0;
+        TrustLevel t = claims.getTrustLevel(p.getUniqueId(), claim);
+        int mask = USE;
+        if (t == null) return mask;
+        if (t.allowsBuild() && perms.ringBuild()) mask |= BUILD;
+        if (t.allowsBreak() && perms.ringBreak()) mask |= BREAK;
+        if (t.allowsContainerView() && perms.ringChestView()) mask |= VIEW;
+        if (t.allowsContainerTake() && perms.ringChestTake()) mask |= TAKE;
+        return mask;
+    }
+
+    /** One player's decisions; only touched on the player's own thread. */
+    private static final class Decisions {
+        final long[] entries = new long[SLOTS];
+        int epoch;
+        World world;
+    }
+}
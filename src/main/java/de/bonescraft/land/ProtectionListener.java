@@ -4,23 +4,36 @@ import org.bukkit.ChatColor;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
 import org.bukkit.block.Container;
 import org.bukkit.block.DoubleChest;
+import org.bukkit.block.data.Directional;
 import org.bukkit.entity.Player;
+import org.bukkit.event.Cancellable;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.block.Action;
 import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockBurnEvent;
+import org.bukkit.event.block.BlockDispenseEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockFromToEvent;
+import org.bukkit.event.block.BlockIgniteEvent;
 import org.bukkit.event.block.BlockPlaceEvent;
 import org.bukkit.event.block.BlockPistonExtendEvent;
 import org.bukkit.event.block.BlockPistonRetractEvent;
+import org.bukkit.event.block.BlockSpreadEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
 import org.bukkit.event.inventory.InventoryAction;
 import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.inventory.InventoryMoveItemEvent;
 import org.bukkit.event.inventory.InventoryOpenEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
 import org.bukkit.inventory.Inventory;
 
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -29,49 +42,68 @@ import java.util.UUID;
  * - Claims: only owner + trusted players can interact
  * - Trusted level defines WHAT is allowed on the claim
  * - Global "Ring" permissions define WHAT the rank is allowed to do
+ * - Explosions, fire, fluids and dispensers cannot reach into claims of another owner
+ *   (see {@link EnvironmentClaimCheck}), and hoppers cannot pull items out of them
+ *   (see {@link ItemTransferCheck})
+ *
+ * Trust and rings are resolved once per player and chunk and then cached
+ * (see {@link ProtectionDecisionCache}).
+ *
+ * Every handler records its run time in {@link Metrics} (see /land stats).
  */
 public class ProtectionListener implements Listener {
 
     private final BonescraftLand plugin;
+    private final LatencyHistogram placeTime;
+    private final LatencyHistogram breakTime;
+    private final LatencyHistogram interactTime;
+    private final LatencyHistogram inventoryOpenTime;
+    private final LatencyHistogram inventoryClickTime;
+    private final LatencyHistogram inventoryDragTime;
+    private final LatencyHistogram pistonExtendTime;
+    private final LatencyHistogram pistonRetractTime;
+    private final LatencyHistogram explodeTime;
+    private final LatencyHistogram fluidTime;
+    private final LatencyHistogram fireTime;
+    private final LatencyHistogram dispenseTime;
+    private final LatencyHistogram itemTransferTime;
+    private final ItemTransferCheck transfers;
 
     public ProtectionListener(BonescraftLand plugin) {
         this.plugin = plugin;
+        Metrics metrics = plugin.getMetrics();
+        this.placeTime = metrics.handler("place");
+        this.breakTime = metrics.handler("break");
+        this.interactTime = metrics.handler("interact");
+        this.inventoryOpenTime = metrics.handler("inventoryOpen");
+        this.inventoryClickTime = metrics.handler("inventoryClick");
+        this.inventoryDragTime = metrics.handler("inventoryDrag");
+        this.pistonExtendTime = metrics.handler("pistonExtend");
+        this.pistonRetractTime = metrics.handler("pistonRetract");
+        this.explodeTime = metrics.handler("explode");
+        this.fluidTime = metrics.handler("fluidFlow");
+        this.fireTime = metrics.handler("fire");
+        this.dispenseTime = metrics.handler("dispense");
+        this.itemTransferTime = metrics.handler("itemTransfer");
+        this.transfers = new ItemTransferCheck(plugin.getClaimManager(), metrics);
+        plugin.getClaimManager().addChangeListener(transfers);
     }
 
     private ClaimManager claims() {
         return plugin.getClaimManager();
     }
 
-    private boolean hasPerm(Player p, String key, String def) {
-        return p.hasPermission(plugin.getConfig().getString(key, def));
-    }
-
-    private boolean isBypass(Player p) {
-        return p.isOp() || hasPerm(p, "permissions.bypass", "bonescraft.bypass");
-    }
-
-    private boolean canBuildAnywhere(Player p) {
-        return hasPerm(p, "permissions.build_anywhere", "bonescraft.build.anywhere");
-    }
-
-    private TrustLevel trust(Player p, Location loc) {
-        ClaimManager.Claim claim = claims().getClaimAt(loc);
-        if (claim == null) return null;
-        return claims().getTrustLevel(p.getUniqueId(), claim);
+    /** What the player may do in the chunk, see {@link ProtectionDecisionCache}. */
+    private int decisions(Player p, Location loc) {
+        return plugin.getProtectionDecisions().get(p, loc);
     }
 
     private boolean canPlace(Player p, Location loc) {
-        if (isBypass(p) || canBuildAnywhere(p)) return true;
-        TrustLevel t = trust(p, loc);
-        if (t == null) return false;
-        return t.allowsBuild() && hasPerm(p, "permissions.ring_build", "bonescraft.ring.build");
+        return (decisions(p, loc) & ProtectionDecisionCache.BUILD) != 0;
     }
 
     private boolean canBreak(Player p, Location loc) {
-        if (isBypass(p) || canBuildAnywhere(p)) return true;
-        TrustLevel t = trust(p, loc);
-        if (t == null) return false;
-        return t.allowsBreak() && hasPerm(p, "permissions.ring_break", "bonescraft.ring.break");
+        return (decisions(p, loc) & ProtectionDecisionCache.BREAK) != 0;
     }
 
     private Location resolveContainerLocation(Inventory inv) {
@@ -82,38 +114,39 @@ public class ProtectionListener implements Listener {
     }
 
     private boolean canOpenContainer(Player p, Location containerLoc) {
-        if (isBypass(p) || canBuildAnywhere(p)) return true;
+        int allowed = decisions(p, containerLoc);
+        if ((allowed & ProtectionDecisionCache.VIEW) != 0) return true;
 
         // Wilderness protected
-        if (claims().getClaimAt(containerLoc) == null) return false;
+        if ((allowed & ProtectionDecisionCache.USE) == 0) return false;
 
+        // can always open own containers
         UUID placedBy = plugin.getContainerOwnerStore().getOwner(containerLoc);
-        boolean isOwn = placedBy != null && placedBy.equals(p.getUniqueId());
-        if (isOwn) return true; // can always open own containers
-
-        TrustLevel t = trust(p, containerLoc);
-        if (t == null || !t.allowsContainerView()) return false;
-        return hasPerm(p, "permissions.ring_chest_view", "bonescraft.ring.chest.view");
+        return placedBy != null && placedBy.equals(p.getUniqueId());
     }
 
     private boolean canTakeFromContainer(Player p, Location containerLoc) {
-        if (isBypass(p) || canBuildAnywhere(p)) return true;
+        if ((decisions(p, containerLoc) & ProtectionDecisionCache.TAKE) != 0) return true;
 
         UUID placedBy = plugin.getContainerOwnerStore().getOwner(containerLoc);
-        boolean isOwn = placedBy != null && placedBy.equals(p.getUniqueId());
-        if (isOwn) return true;
-
-        TrustLevel t = trust(p, containerLoc);
-        if (t == null || !t.allowsContainerTake()) return false;
-        return hasPerm(p, "permissions.ring_chest_take", "bonescraft.ring.chest.take");
+        return placedBy != null && placedBy.equals(p.getUniqueId());
     }
 
     private boolean isContainer(Block b) {
-        return b != null && b.getState() instanceof Container;
+        return b != null && BlockClasses.isContainer(b.getType());
     }
 
     @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
     public void onPlace(BlockPlaceEvent e) {
+        long start = System.nanoTime();
+        try {
+            place(e);
+        } finally {
+            placeTime.record(System.nanoTime() - start);
+        }
+    }
+
+    private void place(BlockPlaceEvent e) {
         Player p = e.getPlayer();
         Block b = e.getBlockPlaced();
 
@@ -130,6 +163,15 @@ public class ProtectionListener implements Listener {
 
     @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
     public void onBreak(BlockBreakEvent e) {
+        long start = System.nanoTime();
+        try {
+            breakBlock(e);
+        } finally {
+            breakTime.record(System.nanoTime() - start);
+        }
+    }
+
+    private void breakBlock(BlockBreakEvent e) {
         Player p = e.getPlayer();
         Block b = e.getBlock();
 
@@ -146,19 +188,32 @@ public class ProtectionListener implements Listener {
 
     @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
     public void onInteract(PlayerInteractEvent e) {
-        if (e.getClickedBlock() == null) return;
-        Player p = e.getPlayer();
+        long start = System.nanoTime();
+        try {
+            interact(e);
+        } finally {
+            interactTime.record(System.nanoTime() - start);
+        }
+    }
+
+    private void interact(PlayerInteractEvent e) {
         Block clicked = e.getClickedBlock();
+        if (clicked == null) return;
+        byte kind = BlockClasses.of(clicked.getType());
+        // Plain blocks only matter when an item is used on them (buckets, flint and steel, bone meal, ...)
+        if (kind == BlockClasses.INERT && !(e.getAction() == Action.RIGHT_CLICK_BLOCK && e.hasItem())) return;
+        Player p = e.getPlayer();
 
         // Containers (chest, barrel, shulker, etc.)
-        if (clicked.getState() instanceof Container container) {
-            Location loc = container.getLocation();
+        if (kind == BlockClasses.CONTAINER) {
+            Location loc = clicked.getLocation();
             if (!canOpenContainer(p, loc)) {
                 e.setCancelled(true);
                 p.sendMessage(ChatColor.RED + "Du darfst diese Truhe nicht öffnen.");
                 return;
             }
-            // set owner on first interaction (for legacy chests)
+            // set owner on first interaction (for legacy chests); PENDING is not null, so a chest
+            // whose chunk is still being read is never handed to whoever clicks first
             if (plugin.getContainerOwnerStore().getOwner(loc) == null) {
                 plugin.getContainerOwnerStore().setOwner(loc, p.getUniqueId());
             }
@@ -166,18 +221,23 @@ public class ProtectionListener implements Listener {
         }
 
         // Protect interaction in wilderness and in claims (doors/buttons/etc.)
-        if (clicked.getType() != Material.AIR) {
-            if (!(isBypass(p) || canBuildAnywhere(p))) {
-                if (claims().getClaimAt(clicked.getLocation()) == null) {
-                    e.setCancelled(true);
-                    p.sendMessage(ChatColor.RED + "Geschützt (Wilderness). ");
-                }
-            }
+        if ((decisions(p, clicked.getLocation()) & ProtectionDecisionCache.USE) == 0) {
+            e.setCancelled(true);
+            p.sendMessage(ChatColor.RED + "Geschützt (Wilderness). ");
         }
     }
 
     @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
     public void onInventoryOpen(InventoryOpenEvent e) {
+        long start = System.nanoTime();
+        try {
+            inventoryOpen(e);
+        } finally {
+            inventoryOpenTime.record(System.nanoTime() - start);
+        }
+    }
+
+    private void inventoryOpen(InventoryOpenEvent e) {
         if (!(e.getPlayer() instanceof Player p)) return;
         Inventory top = e.getView().getTopInventory();
         Location loc = resolveContainerLocation(top);
@@ -191,6 +251,15 @@ public class ProtectionListener implements Listener {
 
     @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
     public void onInventoryClick(InventoryClickEvent e) {
+        long start = System.nanoTime();
+        try {
+            inventoryClick(e);
+        } finally {
+            inventoryClickTime.record(System.nanoTime() - start);
+        }
+    }
+
+    private void inventoryClick(InventoryClickEvent e) {
         if (!(e.getWhoClicked() instanceof Player p)) return;
         Inventory top = e.getView().getTopInventory();
         Location loc = resolveContainerLocation(top);
@@ -212,6 +281,15 @@ public class ProtectionListener implements Listener {
 
     @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
     public void onInventoryDrag(InventoryDragEvent e) {
+        long start = System.nanoTime();
+        try {
+            inventoryDrag(e);
+        } finally {
+            inventoryDragTime.record(System.nanoTime() - start);
+        }
+    }
+
+    private void inventoryDrag(InventoryDragEvent e) {
         if (!(e.getWhoClicked() instanceof Player p)) return;
         Inventory top = e.getView().getTopInventory();
         Location loc = resolveContainerLocation(top);
@@ -231,32 +309,149 @@ public class ProtectionListener implements Listener {
     // Prevent pistons moving blocks across claim boundaries
     @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
     public void onPistonExtend(BlockPistonExtendEvent e) {
-        if (e.getBlocks().isEmpty()) return;
-        for (Block b : e.getBlocks()) {
-            Location from = b.getLocation();
-            Location to = from.clone().add(e.getDirection().getModX(), e.getDirection().getModY(), e.getDirection().getModZ());
-            ClaimManager.Claim c1 = claims().getClaimAt(from);
-            ClaimManager.Claim c2 = claims().getClaimAt(to);
-            if ((c1 == null && c2 != null) || (c1 != null && c2 == null) || (c1 != null && c2 != null && !c1.owner().equals(c2.owner()))) {
-                e.setCancelled(true);
-                return;
-            }
+        long start = System.nanoTime();
+        try {
+            pistonExtend(e);
+        } finally {
+            pistonExtendTime.record(System.nanoTime() - start);
+        }
+    }
+
+    private void pistonExtend(BlockPistonExtendEvent e) {
+        Block piston = e.getBlock();
+        BlockFace dir = e.getDirection();
+        // The head is checked even without moved blocks: it can still pop blocks in the next chunk
+        if (PistonClaimCheck.crossesClaimBorder(claims(), piston, piston.getRelative(dir), e.getBlocks(), dir)) {
+            e.setCancelled(true);
         }
     }
 
     @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
     public void onPistonRetract(BlockPistonRetractEvent e) {
+        long start = System.nanoTime();
+        try {
+            pistonRetract(e);
+        } finally {
+            pistonRetractTime.record(System.nanoTime() - start);
+        }
+    }
+
+    private void pistonRetract(BlockPistonRetractEvent e) {
         if (!e.isSticky()) return;
         if (e.getBlocks().isEmpty()) return;
-        for (Block b : e.getBlocks()) {
-            Location from = b.getLocation();
-            Location to = from.clone().subtract(e.getDirection().getModX(), e.getDirection().getModY(), e.getDirection().getModZ());
-            ClaimManager.Claim c1 = claims().getClaimAt(from);
-            ClaimManager.Claim c2 = claims().getClaimAt(to);
-            if ((c1 == null && c2 != null) || (c1 != null && c2 == null) || (c1 != null && c2 != null && !c1.owner().equals(c2.owner()))) {
-                e.setCancelled(true);
-                return;
+        Block piston = e.getBlock();
+        // For retraction the event direction is the direction the pulled blocks travel
+        BlockFace dir = e.getDirection();
+        if (PistonClaimCheck.crossesClaimBorder(claims(), piston, piston.getRelative(dir.getOppositeFace()), e.getBlocks(), dir)) {
+            e.setCancelled(true);
+        }
+    }
+
+    // Explosions only destroy blocks on land of the owner they started on (or wilderness)
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onEntityExplode(EntityExplodeEvent e) {
+        long start = System.nanoTime();
+        try {
+            Location loc = e.getLocation();
+            if (loc.getWorld() != null) explode(loc.getWorld().getName(), loc.getBlockX(), loc.getBlockZ(), e.blockList());
+        } finally {
+            explodeTime.record(System.nanoTime() - start);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onBlockExplode(BlockExplodeEvent e) {
+        long start = System.nanoTime();
+        try {
+            Block b = e.getBlock();
+            explode(b.getWorld().getName(), b.getX(), b.getZ(), e.blockList());
+        } finally {
+            explodeTime.record(System.nanoTime() - start);
+        }
+    }
+
+    private void explode(String world, int x, int z, List<Block> blocks) {
+        EnvironmentClaimCheck.filterExplosion(claims(), world, x, z, blocks);
+    }
+
+    // Lava and water must not flow into someone else's claim
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onFluidFlow(BlockFromToEvent e) {
+        long start = System.nanoTime();
+        try {
+            spread(e, e.getBlock(), e.getToBlock());
+        } finally {
+            fluidTime.record(System.nanoTime() - start);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onIgnite(BlockIgniteEvent e) {
+        long start = System.nanoTime();
+        try {
+            BlockIgniteEvent.IgniteCause cause = e.getCause();
+            if (cause == BlockIgniteEvent.IgniteCause.SPREAD || cause == BlockIgniteEvent.IgniteCause.LAVA) {
+                spread(e, e.getIgnitingBlock(), e.getBlock());
             }
+        } finally {
+            fireTime.record(System.nanoTime() - start);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onFireSpread(BlockSpreadEvent e) {
+        long start = System.nanoTime();
+        try {
+            Material type = e.getSource().getType();
+            if (type == Material.FIRE || type == Material.SOUL_FIRE) spread(e, e.getSource(), e.getBlock());
+        } finally {
+            fireTime.record(System.nanoTime() - start);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onBurn(BlockBurnEvent e) {
+        long start = System.nanoTime();
+        try {
+            spread(e, e.getIgnitingBlock(), e.getBlock());
+        } finally {
+            fireTime.record(System.nanoTime() - start);
+        }
+    }
+
+    // Dispensers must not place blocks, fluids or fire in the claim in front of them
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onDispense(BlockDispenseEvent e) {
+        long start = System.nanoTime();
+        try {
+            Block dispenser = e.getBlock();
+            if (dispenser.getBlockData() instanceof Directional d) spread(e, dispenser, dispenser.getRelative(d.getFacing()));
+        } finally {
+            dispenseTime.record(System.nanoTime() - start);
         }
     }
+
+    private void spread(Cancellable e, Block from, Block to) {
+        if (from != null && EnvironmentClaimCheck.crossesIntoForeignClaim(claims(), from, to)) {
+            e.setCancelled(true);
+        }
+    }
+
+    // Hoppers and hopper minecarts must not move items out of a claim to another owner's land
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onItemTransfer(InventoryMoveItemEvent e) {
+        long start = System.nanoTime();
+        try {
+            itemTransfer(e);
+        } finally {
+            itemTransferTime.record(System.nanoTime() - start);
+        }
+    }
+
+    private void itemTransfer(InventoryMoveItemEvent e) {
+        Location from = e.getSource().getLocation();
+        Location to = e.getDestination().getLocation();
+        if (from == null || to == null) return; // virtual inventories
+        if (!transfers.isAllowed(from, to)) e.setCancelled(true);
+    }
 }
@@ -0,0 +1,618 @@
+package de.bonescraft.land;
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.Bukkit;
+
+import java.io.File;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Claims in a SQL database that several servers share: SQLite in the data folder by default, or
+ * MySQL/MariaDB for a network (Paper ships both drivers).
+ *
+ * Each server keeps the whole index in memory as usual, so lookups never touch the database. Its
+ * own mutations are written in the background, one transaction each, on a single writer thread.
+ * Every transaction takes the next number from a one-row version counter and lists the claims it
+ * touched under that version in the change feed. The row lock on the counter serializes writers,
+ * so versions become visible in order and without gaps.
+ *
+ * Every {@code sql.poll-millis} the server reads the feed rows above the last version it saw and
+ * fetches just the listed claims with their members, which it hands to
+ * {@link ClaimManager#applyRemote}. Its own changes are fetched again too: the database then has
+ * both servers' edits of a claim changed on two servers at once, which the local index may not.
+ * Claims this server still has writes queued for are left alone until they are written and then
+ * fetched again, whether or not the feed lists them by then. If the
+ * feed has been pruned past the last version seen (a server cut off for longer than
+ * {@code sql.change-retention-hours}), all claims are fetched once.
+ *
+ * New claims take ids from {@code sql.server-id << 24} on, so servers never hand out the same id.
+ * On first start with an empty database the local claims (regions.dat or claims.yml) are copied
+ * in with their ids.
+ *
+ * Without a plugin (the tests, against an embedded database) nothing is imported and nothing is
+ * scheduled: the caller polls with {@link #poll()} and waits for writes with {@link #awaitWrites()}.
+ */
+final class SqlClaimStorage implements ClaimStorage {
+    private static final int ID_BITS = 24;
+    private static final int FETCH_BATCH = 500;
+    private static final long RETRY_MS = 5000;
+    private static final long PRUNE_INTERVAL_MS = 3_600_000;
+
+    private final BonescraftLand plugin;
+    private final Logger log;
+    private final Supplier<List<ClaimManager.Claim>> snapshot;
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int serverId;
+    private final long pollMs;
+    private final long retentionMs;
+    private final String claimsTable;
+    private final String membersTable;
+    private final String changesTable;
+    private final String versionTable;
+    private final ExecutorService writer;
+    private final Metrics.SaveStats writeStats;
+    /** Claim id -> writes queued or running for it; guarded by itself. */
+    private final Map<Integer, Integer> pending = new HashMap<>();
+    private volatile boolean closing;
+    /** Never in auto-commit mode; used by {@link #load} and then only on the writer thread. */
+    private Connection writeConnection;
+
+    // Guarded by this; used by load and the poll task
+    private Connection pollConnection;
+    private ClaimManager manager;
+    private ScheduledTask pollTask;
+    private long version;
+    /** Claims skipped by the last poll because of queued writes, fetched again by the next one. */
+    private Set<Integer> deferred = new HashSet<>();
+    private long nextPruneAt;
+
+    /** One transaction on the writer thread, listed in the feed under {@code version}. */
+    private interface Write {
+        void write(Connection c, long version) throws SQLException;
+    }
+
+    /**
+     * The {@code sql} section of config.yml.
+     *
+     * @param serverId    1..127, the top bits of the ids this server hands out
+     * @param tablePrefix letters, digits and _ only
+     */
+    record Settings(String url, String user, String password, int serverId, long pollMs, long retentionMs,
+                    String tablePrefix) {
+        static Settings from(BonescraftLand plugin) {
+            String defaultUrl = "jdbc:sqlite:" + new File(plugin.getDataFolder(), "claims.db").getAbsolutePath();
+            String configured = plugin.getConfig().getString("sql.url", "");
+            int id = plugin.getConfig().getInt("sql.server-id", 1);
+            if (id < 1 || id > 127) {
+                plugin.getLogger().warning("sql.server-id must be between 1 and 127, using 1");
+                id = 1;
+            }
+            String prefix = plugin.getConfig().getString("sql.table-prefix", "land_");
+            if (!prefix.matches("[A-Za-z0-9_]*")) {
+                plugin.getLogger().warning("sql.table-prefix may only contain letters, digits and _, using land_");
+                prefix = "land_";
+            }
+            return new Settings(configured.isBlank() ? defaultUrl : configured,
+                    plugin.getConfig().getString("sql.user", ""),
+                    plugin.getConfig().getString("sql.password", ""),
+                    id,
+                    Math.max(100, plugin.getConfig().getLong("sql.poll-millis", 1000)),
+                    Math.max(1, plugin.getConfig().getInt("sql.change-retention-hours", 24)) * 3_600_000L,
+                    prefix);
+        }
+    }
+
+    SqlClaimStorage(BonescraftLand plugin, Supplier<List<ClaimManager.Claim>> snapshot) {
+        this(plugin, plugin.getLogger(), Settings.from(plugin), snapshot);
+    }
+
+    /**
+     * @param plugin null to run without a server, see above
+     */
+    SqlClaimStorage(BonescraftLand plugin, Logger log, Settings settings, Supplier<List<ClaimManager.Claim>> snapshot) {
+        this.plugin = plugin;
+        this.log = log;
+        this.snapshot = snapshot;
+        this.url = settings.url();
+        this.user = settings.user();
+        this.password = settings.password();
+        this.serverId = settings.serverId();
+        this.pollMs = settings.pollMs();
+        this.retentionMs = settings.retentionMs();
+        this.claimsTable = settings.tablePrefix() + "claims";
+        this.membersTable = settings.tablePrefix() + "claim_members";
+        this.changesTable = settings.tablePrefix() + "claim_changes";
+        this.versionTable = settings.tablePrefix() + "claim_version";
+        this.writeStats = Metrics.of(plugin).save("sql");
+        this.writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "BonescraftLand-sql");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Fails instead of starting without claims: a server that cannot reach the database would
+     * otherwise leave every claim unprotected.
+     */
+    @Override
+    public synchronized List<ClaimManager.Claim> load() {
+        try {
+            Connection c = connect(true);
+            try {
+                createTables(c);
+                if (plugin != null && readVersion(c) == 0 && isEmpty(c)) importLocal(c);
+                // Read the version first: changes committed while loading are fetched again by the first poll
+                version = readVersion(c);
+                List<ClaimManager.Claim> claims = new ArrayList<>(fetchAll(c).values());
+                // Lower ids win overlaps, as in ClaimManager#applyRemote
+                claims.sort(Comparator.comparingInt(ClaimManager.Claim::id));
+                return claims;
+            } finally {
+                closeQuietly(c);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not load claims from the database: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized void start(ClaimManager manager) {
+        this.manager = manager;
+        this.nextPruneAt = System.currentTimeMillis() + PRUNE_INTERVAL_MS;
+        if (plugin == null) return;
+        this.pollTask = Bukkit.getAsyncScheduler().runAtFixedRate(plugin, t -> poll(), pollMs, pollMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public int firstId() {
+        return serverId << ID_BITS;
+    }
+
+    @Override
+    public int lastId() {
+        return (serverId << ID_BITS) + (1 << ID_BITS) - 1;
+    }
+
+    @Override
+    public void changed(List<ClaimManager.Claim> removed, List<ClaimManager.Claim> added) {
+        List<ClaimManager.Claim> gone = List.copyOf(removed);
+        List<ClaimManager.Claim> fresh = List.copyOf(added);
+        List<Integer> ids = new ArrayList<>(gone.size() + fresh.size());
+        for (ClaimManager.Claim c : gone) ids.add(c.id());
+        for (ClaimManager.Claim c : fresh) ids.add(c.id());
+        submit(ids, (c, v) -> {
+            delete(c, gone);
+            // A retried write may find its claims from a commit that only looked failed
+            delete(c, fresh);
+            insert(c, fresh);
+            feed(c, v, ids);
+        });
+    }
+
+    @Override
+    public void trusted(ClaimManager.Claim claim, UUID member, TrustLevel level) {
+        int id = claim.id();
+        submit(List.of(id), (c, v) -> {
+            try (PreparedStatement del = c.prepareStatement("DELETE FROM " + membersTable + " WHERE claim_id = ? AND member = ?");
+                 // Nothing to trust if another server has removed the claim meanwhile
+                 PreparedStatement ins = c.prepareStatement("INSERT INTO " + membersTable + " (claim_id, member, level) SELECT id, ?, ? FROM "
+                         + claimsTable + " WHERE id = ?")) {
+                del.setInt(1, id);
+                del.setString(2, member.toString());
+                del.executeUpdate();
+                ins.setString(1, member.toString());
+                ins.setString(2, level.name());
+                ins.setInt(3, id);
+                ins.executeUpdate();
+            }
+            feed(c, v, List.of(id));
+        });
+    }
+
+    @Override
+    public void untrusted(ClaimManager.Claim claim, UUID member) {
+        int id = claim.id();
+        submit(List.of(id), (c, v) -> {
+            try (PreparedStatement del = c.prepareStatement("DELETE FROM " + membersTable + " WHERE claim_id = ? AND member = ?")) {
+                del.setInt(1, id);
+                del.setString(2, member.toString());
+                del.executeUpdate();
+            }
+            feed(c, v, List.of(id));
+        });
+    }
+
+    /** Stops polling and writes what is queued; a write that fails now is not retried. */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closing = true;
+            if (pollTask != null) {
+                pollTask.cancel();
+                pollTask = null;
+            }
+            closeQuietly(pollConnection);
+            pollConnection = null;
+        }
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warning("Timed out waiting for pending writes to the claim database");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeQuietly(writeConnection);
+    }
+
+    // --- Writes ---
+
+    private void submit(List<Integer> ids, Write write) {
+        synchronized (pending) {
+            for (int id : ids) pending.merge(id, 1, Integer::sum);
+        }
+        writer.execute(() -> {
+            try {
+                write(write);
+            } finally {
+                synchronized (pending) {
+                    for (int id : ids) pending.computeIfPresent(id, (k, n) -> n == 1 ? null : n - 1);
+                }
+            }
+        });
+    }
+
+    /** Retries until the write succeeds, so later writes never overtake it. */
+    private void write(Write write) {
+        long start = System.nanoTime();
+        boolean reported = false;
+        while (true) {
+            try {
+                if (writeConnection == null) writeConnection = connect(false);
+                Connection c = writeConnection;
+                try {
+                    write.write(c, nextVersion(c));
+                    c.commit();
+                } catch (SQLException e) {
+                    rollbackQuietly(c);
+                    throw e;
+                }
+                writeStats.success(start, 0);
+                if (reported) log.info("Claim database is writable again");
+                return;
+            } catch (SQLException e) {
+                writeStats.failure();
+                closeQuietly(writeConnection);
+                writeConnection = null;
+                if (closing) {
+                    log.severe("Could not write a claim change to the database, dropping it: " + e.getMessage());
+                    return;
+                }
+                if (!reported) {
+                    log.severe("Could not write a claim change to the database, retrying: " + e.getMessage());
+                    reported = true;
+                }
+                try {
+                    Thread.sleep(RETRY_MS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /** Returns once every change reported so far has been written, or given up on while closing. */
+    void awaitWrites() throws InterruptedException {
+        try {
+            writer.submit(() -> {}).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /** The row lock taken here is held until commit, which puts concurrent writers in order. */
+    private long nextVersion(Connection c) throws SQLException {
+        try (PreparedStatement up = c.prepareStatement("UPDATE " + versionTable + " SET version = version + 1 WHERE id = 1")) {
+            up.executeUpdate();
+        }
+        return readVersion(c);
+    }
+
+    private void delete(Connection c, List<ClaimManager.Claim> claims) throws SQLException {
+        if (claims.isEmpty()) return;
+        try (PreparedStatement members = c.prepareStatement("DELETE FROM " + membersTable + " WHERE claim_id = ?");
+             PreparedStatement rows = c.prepareStatement("DELETE FROM " + claimsTable + " WHERE id = ?")) {
+            for (ClaimManager.Claim claim : claims) {
+                members.setInt(1, claim.id());
+                members.addBatch();
+                rows.setInt(1, claim.id());
+                rows.addBatch();
+            }
+            members.executeBatch();
+            rows.executeBatch();
+        }
+    }
+
+    private void insert(Connection c, List<ClaimManager.Claim> claims) throws SQLException {
+        if (claims.isEmpty()) return;
+        try (PreparedStatement rows = c.prepareStatement("INSERT INTO " + claimsTable
+                + " (id, world, min_x, min_z, max_x, max_z, owner) VALUES (?, ?, ?, ?, ?, ?, ?)");
+             PreparedStatement members = c.prepareStatement("INSERT INTO " + membersTable + " (claim_id, member, level) VALUES (?, ?, ?)")) {
+            boolean anyMembers = false;
+            for (ClaimManager.Claim claim : claims) {
+                rows.setInt(1, claim.id());
+                rows.setString(2, claim.world());
+                rows.setInt(3, claim.minX());
+                rows.setInt(4, claim.minZ());
+                rows.setInt(5, claim.maxX());
+                rows.setInt(6, claim.maxZ());
+                rows.setString(7, claim.owner().toString());
+                rows.addBatch();
+                for (Map.Entry<UUID, TrustLevel> m : claim.members().entrySet()) {
+                    members.setInt(1, claim.id());
+                    members.setString(2, m.getKey().toString());
+                    members.setString(3, m.getValue().name());
+                    members.addBatch();
+                    anyMembers = true;
+                }
+            }
+            rows.executeBatch();
+            if (anyMembers) members.executeBatch();
+        }
+    }
+
+    private void feed(Connection c, long version, List<Integer> ids) throws SQLException {
+        try (PreparedStatement ins = c.prepareStatement("INSERT INTO " + changesTable
+                + " (version, claim_id, server_id, created) VALUES (?, ?, ?, ?)")) {
+            long now = System.currentTimeMillis();
+            for (int id : ids) {
+                ins.setLong(1, version);
+                ins.setInt(2, id);
+                ins.setInt(3, serverId);
+                ins.setLong(4, now);
+                ins.addBatch();
+            }
+            ins.executeBatch();
+        }
+    }
+
+    // --- Change feed ---
+
+    /** Applies the changes in the feed; runs every {@code sql.poll-millis} on an async thread. */
+    synchronized void poll() {
+        if (closing || manager == null) return;
+        try {
+            if (pollConnection == null) pollConnection = connect(true);
+            Connection c = pollConnection;
+            long head = readVersion(c);
+            if (head > version || !deferred.isEmpty()) {
+                Map<Integer, ClaimManager.Claim> changes = head > version ? changesSince(c, head) : new HashMap<>();
+                fetchInto(c, deferred, changes);
+                Set<Integer> busy;
+                synchronized (pending) {
+                    busy = new HashSet<>(pending.keySet());
+                }
+                // A claim with a queued write keeps its local state, which the database does not have
+                // yet. Its feed row cannot be relied on to bring it back: a write that committed before
+                // head is still in pending until its finally block runs. So it is fetched again next
+                // time, and applied once nothing is queued for it. The same goes for remote claims that
+                // overlap it, which applyRemote can neither apply nor release until it stands or is gone.
+                Set<Integer> again = new HashSet<>(busy);
+                again.retainAll(changes.keySet());
+                changes.keySet().removeAll(again);
+                again.addAll(manager.applyRemote(changes, busy));
+                deferred = again;
+                version = head;
+            }
+            long now = System.currentTimeMillis();
+            if (now >= nextPruneAt) {
+                nextPruneAt = now + PRUNE_INTERVAL_MS;
+                try (PreparedStatement del = c.prepareStatement("DELETE FROM " + changesTable + " WHERE created < ?")) {
+                    del.setLong(1, now - retentionMs);
+                    del.executeUpdate();
+                }
+            }
+        } catch (SQLException e) {
+            log.warning("Could not read claim changes from the database: " + e.getMessage());
+            closeQuietly(pollConnection);
+            pollConnection = null;
+        }
+    }
+
+    /** Current state of every claim changed after {@link #version} up to {@code head}; null if removed. */
+    private Map<Integer, ClaimManager.Claim> changesSince(Connection c, long head) throws SQLException {
+        Set<Integer> ids = new HashSet<>();
+        long first = 0;
+        try (PreparedStatement q = c.prepareStatement("SELECT version, claim_id FROM " + changesTable
+                + " WHERE version > ? AND version <= ? ORDER BY version")) {
+            q.setLong(1, version);
+            q.setLong(2, head);
+            try (ResultSet rs = q.executeQuery()) {
+                while (rs.next()) {
+                    if (first == 0) first = rs.getLong(1);
+                    ids.add(rs.getInt(2));
+                }
+            }
+        }
+        Map<Integer, ClaimManager.Claim> changes = new HashMap<>();
+        if (first != version + 1) {
+            log.warning("Claim change feed was pruned past version " + version + ", reloading all claims");
+            for (ClaimManager.Claim claim : snapshot.get()) changes.put(claim.id(), null);
+            changes.putAll(fetchAll(c));
+            return changes;
+        }
+        fetchInto(c, ids, changes);
+        return changes;
+    }
+
+    /** Puts the current state of the claims into {@code out}, null for those removed. */
+    private void fetchInto(Connection c, Collection<Integer> ids, Map<Integer, ClaimManager.Claim> out) throws SQLException {
+        List<Integer> list = new ArrayList<>(ids);
+        for (int from = 0; from < list.size(); from += FETCH_BATCH) {
+            List<Integer> batch = list.subList(from, Math.min(list.size(), from + FETCH_BATCH));
+            for (int id : batch) out.put(id, null);
+            out.putAll(fetch(c, batch));
+        }
+    }
+
+    // --- Reads ---
+
+    private Map<Integer, ClaimManager.Claim> fetchAll(Connection c) throws SQLException {
+        try (PreparedStatement rows = c.prepareStatement("SELECT id, world, min_x, min_z, max_x, max_z, owner FROM " + claimsTable);
+             PreparedStatement members = c.prepareStatement("SELECT claim_id, member, level FROM " + membersTable)) {
+            return read(rows, members);
+        }
+    }
+
+    private Map<Integer, ClaimManager.Claim> fetch(Connection c, List<Integer> ids) throws SQLException {
+        String in = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        try (PreparedStatement rows = c.prepareStatement("SELECT id, world, min_x, min_z, max_x, max_z, owner FROM " + claimsTable
+                + " WHERE id IN (" + in + ")");
+             PreparedStatement members = c.prepareStatement("SELECT claim_id, member, level FROM " + membersTable
+                     + " WHERE claim_id IN (" + in + ")")) {
+            for (int i = 0; i < ids.size(); i++) {
+                rows.setInt(i + 1, ids.get(i));
+                members.setInt(i + 1, ids.get(i));
+            }
+            return read(rows, members);
+        }
+    }
+
+    private Map<Integer, ClaimManager.Claim> read(PreparedStatement rows, PreparedStatement members) throws SQLException {
+        Map<Integer, Map<UUID, TrustLevel>> trusted = new HashMap<>();
+        try (ResultSet rs = members.executeQuery()) {
+            while (rs.next()) {
+                trusted.computeIfAbsent(rs.getInt(1), k -> new HashMap<>())
+                        .put(UUID.fromString(rs.getString(2)), TrustLevel.parse(rs.getString(3)));
+            }
+        }
+        Map<Integer, ClaimManager.Claim> claims = new HashMap<>();
+        try (ResultSet rs = rows.executeQuery()) {
+            while (rs.next()) {
+                int id = rs.getInt(1);
+                claims.put(id, new ClaimManager.Claim(id, rs.getString(2), rs.getInt(3), rs.getInt(4), rs.getInt(5), rs.getInt(6),
+                        UUID.fromString(rs.getString(7)), trusted.getOrDefault(id, Map.of())));
+            }
+        }
+        return claims;
+    }
+
+    private long readVersion(Connection c) throws SQLException {
+        try (Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT version FROM " + versionTable + " WHERE id = 1")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    // --- Setup ---
+
+    private Connection connect(boolean autoCommit) throws SQLException {
+        Connection c = user.isEmpty() ? DriverManager.getConnection(url) : DriverManager.getConnection(url, user, password);
+        try {
+            if (url.startsWith("jdbc:sqlite:")) {
+                // Lets the poll read while the writer writes, and makes them wait for each other's locks
+                try (Statement st = c.createStatement()) {
+                    st.execute("PRAGMA journal_mode=WAL");
+                    st.execute("PRAGMA busy_timeout=5000");
+                }
+            }
+            c.setAutoCommit(autoCommit);
+            return c;
+        } catch (SQLException e) {
+            closeQuietly(c);
+            throw e;
+        }
+    }
+
+    /** Plain types and no auto-increment, so the same statements work on SQLite, MySQL and MariaDB. */
+    private void createTables(Connection c) throws SQLException {
+        try (Statement st = c.createStatement()) {
+            st.executeUpdate("CREATE TABLE IF NOT EXISTS " + claimsTable + " (id INT NOT NULL PRIMARY KEY, world VARCHAR(128) NOT NULL,"
+                    + " min_x INT NOT NULL, min_z INT NOT NULL, max_x INT NOT NULL, max_z INT NOT NULL, owner CHAR(36) NOT NULL)");
+            st.executeUpdate("CREATE TABLE IF NOT EXISTS " + membersTable + " (claim_id INT NOT NULL, member CHAR(36) NOT NULL,"
+                    + " level VARCHAR(16) NOT NULL, PRIMARY KEY (claim_id, member))");
+            st.executeUpdate("CREATE TABLE IF NOT EXISTS " + changesTable + " (version BIGINT NOT NULL, claim_id INT NOT NULL,"
+                    + " server_id INT NOT NULL, created BIGINT NOT NULL, PRIMARY KEY (version, claim_id))");
+            st.executeUpdate("CREATE TABLE IF NOT EXISTS " + versionTable + " (id INT NOT NULL PRIMARY KEY, version BIGINT NOT NULL)");
+            if (count(c, versionTable) > 0) return;
+            try {
+                st.executeUpdate("INSERT INTO " + versionTable + " (id, version) VALUES (1, 0)");
+            } catch (SQLException e) {
+                // Fine if another server starting at the same time inserted it first
+                if (count(c, versionTable) == 0) throw e;
+            }
+        }
+    }
+
+    private boolean isEmpty(Connection c) throws SQLException {
+        return count(c, claimsTable) == 0;
+    }
+
+    private static long count(Connection c, String table) throws SQLException {
+        try (Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /** Copies the claims of the file storages into a new, empty database. */
+    private void importLocal(Connection c) throws SQLException {
+        List<ClaimManager.Claim> claims;
+        String source;
+        if (new File(plugin.getDataFolder(), "regions.dat").isFile()) {
+            JournalClaimStorage journal = new JournalClaimStorage(plugin, List::of);
+            claims = journal.load();
+            journal.close();
+            source = "regions.dat";
+        } else {
+            File yml = new File(plugin.getDataFolder(), "claims.yml");
+            if (!yml.isFile()) return;
+            claims = YamlClaimStorage.read(yml);
+            source = "claims.yml";
+        }
+        if (claims.isEmpty()) return;
+        List<Integer> ids = new ArrayList<>(claims.size());
+        for (ClaimManager.Claim claim : claims) ids.add(claim.id());
+        c.setAutoCommit(false);
+        try {
+            long v = nextVersion(c);
+            insert(c, claims);
+            feed(c, v, ids);
+            c.commit();
+        } catch (SQLException e) {
+            rollbackQuietly(c);
+            throw e;
+        } finally {
+            c.setAutoCommit(true);
+        }
+        log.info("Imported " + claims.size() + " claims from " + source + " into the claim database");
+    }
+
+    private static void rollbackQuietly(Connection c) {
+        try {
+            c.rollback();
+        } catch (SQLException ignored) {
+            // The connection is dropped anyway
+        }
+    }
+
+    private static void closeQuietly(Connection c) {
+        if (c == null) return;
+        try {
+            c.close();
+        } catch (SQLException ignored) {
+            // Nothing left to do with it
+        }
+    }
+}
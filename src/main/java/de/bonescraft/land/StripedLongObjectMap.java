@@ -0,0 +1,93 @@
+package de.bonescraft.land;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Thread-safe {@link LongObjectMap} for data that is read far more often than it changes, such as
+ * the shards of loaded chunks. Keys are spread over 64 stripes; each stripe is a map that is never
+ * modified once published. A writer copies its stripe under the stripe's lock and publishes the
+ * copy, so readers only do a volatile load and a probe, without locking, boxing or allocation.
+ */
+final class StripedLongObjectMap<V> {
+    private static final int STRIPES = 64;
+
+    private final AtomicReferenceArray<LongObjectMap<V>> stripes = new AtomicReferenceArray<>(STRIPES);
+    private final Object[] locks = new Object[STRIPES];
+
+    StripedLongObjectMap() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes.set(i, new LongObjectMap<>());
+            locks[i] = new Object();
+        }
+    }
+
+    private static int stripe(long key) {
+        return ((int) (key ^ (key >>> 32)) * 0x9E3779B9) >>> 26;
+    }
+
+    V get(long key) {
+        return stripes.get(stripe(key)).get(key);
+    }
+
+    /** @return the value already stored for the key, or {@code null} if the value was added */
+    V putIfAbsent(long key, V value) {
+        int i = stripe(key);
+        synchronized (locks[i]) {
+            LongObjectMap<V> map = stripes.get(i);
+            V old = map.get(key);
+            if (old != null) return old;
+            LongObjectMap<V> copy = new LongObjectMap<>(map);
+            copy.put(key, value);
+            stripes.set(i, copy);
+            return null;
+        }
+    }
+
+    V put(long key, V value) {
+        int i = stripe(key);
+        synchronized (locks[i]) {
+            LongObjectMap<V> copy = new LongObjectMap<>(stripes.get(i));
+            V old = copy.put(key, value);
+            stripes.set(i, copy);
+            return old;
+        }
+    }
+
+    V remove(long key) {
+        int i = stripe(key);
+        synchronized (locks[i]) {
+            LongObjectMap<V> map = stripes.get(i);
+            if (map.get(key) == null) return null;
+            LongObjectMap<V> copy = new LongObjectMap<>(map);
+            V old = copy.remove(key);
+            stripes.set(i, copy);
+            return old;
+        }
+    }
+
+    /** Removes the entry only if it still maps to {@code expected}. */
+    boolean remove(long key, V expected) {
+        int i = stripe(key);
+        synchronized (locks[i]) {
+            LongObjectMap<V> map = stripes.get(i);
+            if (map.get(key) != expected) return false;
+            LongObjectMap<V> copy = new LongObjectMap<>(map);
+            copy.remove(key);
+            stripes.set(i, copy);
+            return true;
+        }
+    }
+
+    /** Visits each stripe as it was when the visit reached it; changes made meanwhile may be missed. */
+    void forEach(LongObjectMap.Visitor<? super V> visitor) {
+        for (int i = 0; i < STRIPES; i++) stripes.get(i).forEach(visitor);
+    }
+
+    void clear() {
+        for (int i = 0; i < STRIPES; i++) {
+            synchronized (locks[i]) {
+                stripes.set(i, new LongObjectMap<>());
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package de.bonescraft.land;
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.Bukkit;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Coalescing write-behind persistence for a single data file.
+ *
+ * Mutations only call {@link #markDirty()}. Every interval a task on the global region thread
+ * (the main thread on Paper) takes a cheap snapshot of the store, and a dedicated writer thread
+ * serializes it and replaces the file atomically (temp file + rename). Any number of mutations
+ * between two ticks of the timer end up as one disk write.
+ */
+final class WriteBehindWriter<T> {
+    private final BonescraftLand plugin;
+    private final File file;
+    private final Supplier<T> snapshot;
+    private final Function<T, byte[]> serializer;
+    private final ExecutorService io;
+    private final Metrics.SaveStats stats;
+    private volatile boolean dirty;
+    private ScheduledTask task;
+
+    /**
+     * @param snapshot   called on the global region thread; must return data that is safe to read from another thread
+     * @param serializer called on the writer thread
+     */
+    WriteBehindWriter(BonescraftLand plugin, File file, Supplier<T> snapshot, Function<T, byte[]> serializer) {
+        this.plugin = plugin;
+        this.file = file;
+        this.snapshot = snapshot;
+        this.serializer = serializer;
+        this.stats = Metrics.of(plugin).save(file.getName());
+        this.io = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "BonescraftLand-writer-" + file.getName());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    void start(int intervalSeconds) {
+        long ticks = Math.max(1, intervalSeconds) * 20L;
+        this.task = Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin, t -> flushAsync(), ticks, ticks);
+    }
+
+    void markDirty() {
+        dirty = true;
+    }
+
+    private void flushAsync() {
+        if (!dirty) return;
+        dirty = false;
+        T snap = snapshot.get();
+        io.execute(() -> write(snap));
+    }
+
+    /**
+     * Stops the timer, waits for queued writes and then writes any remaining changes on the
+     * calling thread. Used from onDisable.
+     */
+    void close() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        io.shutdown();
+        try {
+            if (!io.awaitTermination(30, TimeUnit.SECONDS)) {
+                plugin.getLogger().warning("Timed out waiting for pending writes to " + file.getName());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (dirty) {
+            dirty = false;
+            write(snapshot.get());
+        }
+    }
+
+    private void write(T snap) {
+        long start = System.nanoTime();
+        try {
+            byte[] data = serializer.apply(snap);
+            writeAtomically(file.toPath(), data);
+            stats.success(start, data.length);
+        } catch (IOException | RuntimeException e) {
+            // Retry with the next snapshot
+            dirty = true;
+            stats.failure();
+            plugin.getLogger().severe("Could not save " + file.getName() + ": " + e.getMessage());
+        }
+    }
+
+    static void writeAtomically(Path target, byte[] data) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.write(tmp, data);
+        moveAtomically(tmp, target);
+    }
+
+    static void moveAtomically(Path tmp, Path target) throws IOException {
+        try {
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package de.bonescraft.land;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * claims.yml backend. Every mutation just marks the file dirty; a {@link WriteBehindWriter}
+ * rewrites the whole document in the background.
+ * Data format: {@code format: 2}, then claims -> id -> world, from "x,z", to "x,z", owner, members[].
+ * A claims.yml in the old per-chunk layout is converted on load and kept as claims.yml.v1.
+ */
+final class YamlClaimStorage implements ClaimStorage {
+    private static final int FORMAT = 2;
+
+    private final BonescraftLand plugin;
+    private final File file;
+    private final WriteBehindWriter<List<ClaimManager.Claim>> writer;
+
+    YamlClaimStorage(BonescraftLand plugin, Supplier<List<ClaimManager.Claim>> snapshot) {
+        this.plugin = plugin;
+        this.file = new File(plugin.getDataFolder(), "claims.yml");
+        this.writer = new WriteBehindWriter<>(plugin, file, snapshot,
+                claims -> serialize(claims).getBytes(StandardCharsets.UTF_8));
+        writer.start(plugin.getConfig().getInt("save-interval-seconds", 5));
+    }
+
+    @Override
+    public List<ClaimManager.Claim> load() {
+        if (!file.exists()) {
+            try {
+                plugin.getDataFolder().mkdirs();
+                file.createNewFile();
+            } catch (IOException e) {
+                plugin.getLogger().severe("Could not create claims.yml: " + e.getMessage());
+            }
+        }
+        YamlConfiguration cfg = YamlConfiguration.loadConfiguration(file);
+        if (!LegacyClaimImport.isLegacyYaml(cfg) || cfg.getKeys(false).isEmpty()) return read(cfg);
+
+        List<ClaimManager.Claim> claims = LegacyClaimImport.fromYaml(cfg);
+        File backup = new File(plugin.getDataFolder(), "claims.yml.v1");
+        try {
+            Files.copy(file.toPath(), backup.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not back up claims.yml before converting it: " + e.getMessage());
+        }
+        plugin.getLogger().info("Converted claims.yml to regions: " + claims.size() + " claims (old file kept as claims.yml.v1)");
+        writer.markDirty();
+        return claims;
+    }
+
+    /** Parses a claims.yml file in either layout; also used by the journal importer. */
+    static List<ClaimManager.Claim> read(File file) {
+        YamlConfiguration cfg = YamlConfiguration.loadConfiguration(file);
+        return LegacyClaimImport.isLegacyYaml(cfg) ? LegacyClaimImport.fromYaml(cfg) : read(cfg);
+    }
+
+    private static List<ClaimManager.Claim> read(YamlConfiguration cfg) {
+        List<ClaimManager.Claim> claims = new ArrayList<>();
+        ConfigurationSection sec = cfg.getConfigurationSection("claims");
+        if (sec == null) return claims;
+        for (String key : sec.getKeys(false)) {
+            ClaimManager.Claim c = parseClaim(key, sec.getConfigurationSection(key));
+            if (c != null) claims.add(c);
+        }
+        return claims;
+    }
+
+    private static ClaimManager.Claim parseClaim(String key, ConfigurationSection claimSec) {
+        if (claimSec == null) return null;
+        int id;
+        try {
+            id = Integer.parseInt(key);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        String world = claimSec.getString("world");
+        int[] from = parseChunk(claimSec.getString("from"));
+        int[] to = parseChunk(claimSec.getString("to"));
+        UUID owner = parseUuid(claimSec.getString("owner"));
+        if (id <= 0 || world == null || from == null || to == null || owner == null) return null;
+        return new ClaimManager.Claim(id, world,
+                Math.min(from[0], to[0]), Math.min(from[1], to[1]), Math.max(from[0], to[0]), Math.max(from[1], to[1]),
+                owner, parseMembers(claimSec.getStringList("members")));
+    }
+
+    /** @return {x, z} from "x,z", or null */
+    static int[] parseChunk(String key) {
+        if (key == null) return null;
+        try {
+            String[] parts = key.split(",");
+            return new int[]{Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim())};
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    static UUID parseUuid(String raw) {
+        if (raw == null) return null;
+        try {
+            return UUID.fromString(raw);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    static Map<UUID, TrustLevel> parseMembers(List<String> memberStrs) {
+        Map<UUID, TrustLevel> members = new HashMap<>();
+        for (String s : memberStrs) {
+            if (s == null || s.isBlank()) continue;
+            // Format: uuid:LEVEL  OR legacy: uuid
+            String[] parts = s.split(":", 2);
+            try {
+                UUID id = UUID.fromString(parts[0].trim());
+                TrustLevel lvl = parts.length == 2 ? TrustLevel.parse(parts[1]) : TrustLevel.BUILD;
+                members.put(id, lvl);
+            } catch (IllegalArgumentException ignored) {}
+        }
+        return members;
+    }
+
+    private static String serialize(List<ClaimManager.Claim> claims) {
+        YamlConfiguration out = new YamlConfiguration();
+        out.set("format", FORMAT);
+        ConfigurationSection sec = out.createSection("claims");
+        for (ClaimManager.Claim c : claims) {
+            ConfigurationSection claimSec = sec.createSection(Integer.toString(c.id()));
+            claimSec.set("world", c.world());
+            claimSec.set("from", ClaimManager.chunkKey(c.minX(), c.minZ()));
+            claimSec.set("to", ClaimManager.chunkKey(c.maxX(), c.maxZ()));
+            claimSec.set("owner", c.owner().toString());
+            claimSec.set("members", c.membersForSave());
+        }
+        return out.saveToString();
+    }
+
+    @Override
+    public void changed(List<ClaimManager.Claim> removed, List<ClaimManager.Claim> added) {
+        writer.markDirty();
+    }
+
+    @Override
+    public void trusted(ClaimManager.Claim claim, UUID member, TrustLevel level) {
+        writer.markDirty();
+    }
+
+    @Override
+    public void untrusted(ClaimManager.Claim claim, UUID member) {
+        writer.markDirty();
+    }
+
+    @Override
+    public void close() {
+        writer.close();
+    }
+}
@@ -0,0 +1,256 @@
+package de.bonescraft.land;
+
+import de.bonescraft.land.ClaimManager.Claim;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link SqlClaimStorage} against embedded databases: SQLite, the default, and H2 in MySQL mode
+ * standing in for MySQL/MariaDB. Every test runs a few servers (a {@link ClaimManager} each) on
+ * one database; a server sees the others' changes when it polls.
+ */
+class SqlClaimStorageTest {
+    private static final Logger LOG = Logger.getLogger(SqlClaimStorageTest.class.getName());
+    private static final String SQLITE = "sqlite";
+    private static final String H2 = "h2";
+    private static final UUID ALICE = new UUID(0, 1);
+    private static final UUID BOB = new UUID(0, 2);
+    private static final UUID CAROL = new UUID(0, 3);
+
+    @TempDir
+    Path dir;
+    private final List<Server> servers = new ArrayList<>();
+
+    private record Server(ClaimManager claims, SqlClaimStorage storage) {
+        /** Writes this server's changes, then applies everyone's. */
+        void sync() throws InterruptedException {
+            storage.awaitWrites();
+            storage.poll();
+        }
+    }
+
+    @AfterEach
+    void closeServers() {
+        for (Server s : servers) s.claims().close();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {SQLITE, H2})
+    void claimTrustAndCutReachTheOtherServer(String dialect) throws Exception {
+        String url = url(dialect);
+        Server a = server(url, 1);
+        Server b = server(url, 2);
+
+        a.claims().claimArea("world", 0, 0, 4, 4, ALICE);
+        a.sync();
+        b.sync();
+        Claim claim = b.claims().getClaimAt("world", 2, 2);
+        assertNotNull(claim);
+        assertEquals(ALICE, claim.owner());
+
+        b.claims().addMember(claim, BOB, TrustLevel.BUILD);
+        b.claims().addMember(claim, CAROL, TrustLevel.CONTAINER_VIEW);
+        b.sync();
+        a.sync();
+        Claim trusted = a.claims().getClaimAt("world", 2, 2);
+        assertEquals(TrustLevel.BUILD, a.claims().getTrustLevel(BOB, trusted));
+        assertEquals(TrustLevel.CONTAINER_VIEW, a.claims().getTrustLevel(CAROL, trusted));
+
+        b.claims().removeMember(claim, BOB);
+        b.sync();
+        a.sync();
+        assertNull(a.claims().getTrustLevel(BOB, a.claims().getClaimAt("world", 2, 2)));
+
+        // Cutting out the middle leaves four pieces that keep the members
+        a.claims().unclaimArea("world", 2, 2, 2, 2, ALICE);
+        a.sync();
+        b.sync();
+        assertNull(b.claims().getClaimAt("world", 2, 2));
+        List<Claim> pieces = b.claims().getClaimsIn("world", 0, 0, 4, 4);
+        assertEquals(4, pieces.size());
+        for (Claim piece : pieces) assertEquals(Map.of(CAROL, TrustLevel.CONTAINER_VIEW), piece.members());
+        assertEquals(24, b.claims().getClaimCount(ALICE));
+        assertEquals(claims(a), claims(b));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {SQLITE, H2})
+    void serversHandOutIdsFromTheirOwnRange(String dialect) throws Exception {
+        String url = url(dialect);
+        Server a = server(url, 1);
+        Server b = server(url, 2);
+        assertEquals(1 << 24, a.storage().firstId());
+        assertEquals((2 << 24) - 1, a.storage().lastId());
+        assertEquals(2 << 24, b.storage().firstId());
+
+        a.claims().claimArea("world", 0, 0, 0, 0, ALICE);
+        b.claims().claimArea("world", 10, 10, 10, 10, BOB);
+        a.sync();
+        b.sync();
+        a.sync();
+        assertEquals(1 << 24, a.claims().getClaimAt("world", 0, 0).id());
+        assertEquals(2 << 24, a.claims().getClaimAt("world", 10, 10).id());
+
+        // Seeing the other server's claims does not move this server's next id
+        a.claims().claimArea("world", 20, 20, 20, 20, ALICE);
+        b.claims().claimArea("world", 30, 30, 30, 30, BOB);
+        assertEquals((1 << 24) + 1, a.claims().getClaimAt("world", 20, 20).id());
+        assertEquals((2 << 24) + 1, b.claims().getClaimAt("world", 30, 30).id());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {SQLITE, H2})
+    void lowerIdWinsClaimsMadeAtTheSameTime(String dialect) throws Exception {
+        String url = url(dialect);
+        Server a = server(url, 1);
+        Server b = server(url, 2);
+
+        // Neither has seen the other's claim yet
+        a.claims().claimArea("world", 0, 0, 2, 2, ALICE);
+        b.claims().claimArea("world", 1, 1, 3, 3, BOB);
+        a.sync();
+        b.sync();
+        // b released its claim; a reads that release
+        b.sync();
+        a.sync();
+
+        for (Server s : List.of(a, b)) {
+            assertEquals(ALICE, s.claims().getClaimAt("world", 1, 1).owner());
+            assertEquals(1 << 24, s.claims().getClaimAt("world", 1, 1).id());
+            assertNull(s.claims().getClaimAt("world", 3, 3));
+        }
+        assertEquals(claims(a), claims(b));
+        // The database holds only the winner as well
+        assertEquals(claims(a), claims(server(url, 3)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {SQLITE, H2})
+    void losingClaimOfAnOfflineServerIsReleased(String dialect) throws Exception {
+        String url = url(dialect);
+        Server a = server(url, 1);
+        Server b = server(url, 2);
+        a.claims().claimArea("world", 0, 0, 2, 2, ALICE);
+        b.claims().claimArea("world", 1, 1, 3, 3, BOB);
+        // b stops before it sees a's claim, so it cannot release its own
+        b.claims().close();
+        a.sync();
+        a.storage().awaitWrites();
+
+        assertNull(a.claims().getClaimAt("world", 3, 3));
+        Server c = server(url, 3);
+        assertEquals(claims(a), claims(c));
+        assertEquals(1, claims(c).size());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {SQLITE, H2})
+    void trustChangeRacingARemoteCut(String dialect) throws Exception {
+        String url = url(dialect);
+        Server a = server(url, 1);
+        Server b = server(url, 2);
+        a.claims().claimArea("world", 0, 0, 4, 4, ALICE);
+        a.sync();
+        b.sync();
+
+        b.claims().unclaimArea("world", 2, 2, 2, 2, ALICE);
+        b.storage().awaitWrites();
+        // a trusts on the claim b has just cut and polls while the write may still be queued
+        a.claims().addMember(a.claims().getClaimAt("world", 0, 0), BOB, TrustLevel.BUILD);
+        a.storage().poll();
+        a.sync();
+        b.sync();
+
+        assertNull(a.claims().getClaimAt("world", 2, 2));
+        assertEquals(4, a.claims().getClaimsIn("world", 0, 0, 4, 4).size());
+        assertEquals(claims(b), claims(a));
+        assertEquals(claims(a), claims(server(url, 3)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {SQLITE, H2})
+    void prunedFeedReloadsAllClaims(String dialect) throws Exception {
+        String url = url(dialect);
+        Server a = server(url, 1);
+        Server b = server(url, 2);
+        a.claims().claimArea("world", 0, 0, 1, 1, ALICE);
+        a.sync();
+        b.sync();
+
+        b.claims().unclaimArea("world", 0, 0, 1, 1, null);
+        b.claims().claimArea("world", 5, 5, 6, 6, BOB);
+        b.storage().awaitWrites();
+        // As if a had been cut off longer than sql.change-retention-hours: only the last change is left
+        try (Connection c = DriverManager.getConnection(url);
+             Statement st = c.createStatement()) {
+            st.executeUpdate("DELETE FROM land_claim_changes WHERE version < (SELECT version FROM land_claim_version WHERE id = 1)");
+        }
+        a.sync();
+
+        assertNull(a.claims().getClaimAt("world", 0, 0));
+        assertEquals(BOB, a.claims().getClaimAt("world", 5, 5).owner());
+        assertEquals(claims(b), claims(a));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {SQLITE, H2})
+    void restartLoadsTheDatabase(String dialect) throws Exception {
+        String url = url(dialect);
+        Server a = server(url, 1);
+        a.claims().claimArea("world", 0, 0, 4, 4, ALICE);
+        a.claims().claimArea("nether", -3, -3, -1, -1, BOB);
+        a.claims().addMember(a.claims().getClaimAt("world", 0, 0), CAROL, TrustLevel.BREAK);
+        a.claims().unclaimArea("world", 0, 0, 0, 4, ALICE);
+        Map<Integer, Claim> before = claims(a);
+        a.claims().close();
+
+        Server again = server(url, 1);
+        assertEquals(before, claims(again));
+        assertEquals(TrustLevel.BREAK, again.claims().getTrustLevel(CAROL, again.claims().getClaimAt("world", 2, 2)));
+        // New ids continue after the highest one in the range
+        int highest = before.keySet().stream().mapToInt(Integer::intValue).max().orElseThrow();
+        again.claims().claimArea("world", 10, 10, 10, 10, ALICE);
+        assertEquals(highest + 1, again.claims().getClaimAt("world", 10, 10).id());
+    }
+
+    // ---- helpers --------------------------------------------------------------------------
+
+    private String url(String dialect) {
+        return switch (dialect) {
+            case SQLITE -> "jdbc:sqlite:" + dir.resolve("claims.db");
+            case H2 -> "jdbc:h2:" + dir.resolve("claims") + ";MODE=MySQL";
+            default -> throw new IllegalArgumentException(dialect);
+        };
+    }
+
+    /** A server on the database, without poll timer: tests poll through {@link Server#sync()}. */
+    private Server server(String url, int serverId) {
+        SqlClaimStorage.Settings settings = new SqlClaimStorage.Settings(url, "", "", serverId, 1000, 3_600_000L, "land_");
+        SqlClaimStorage[] storage = new SqlClaimStorage[1];
+        ClaimManager claims = new ClaimManager(null, snapshot -> storage[0] = new SqlClaimStorage(null, LOG, settings, snapshot));
+        Server server = new Server(claims, storage[0]);
+        servers.add(server);
+        return server;
+    }
+
+    private static Map<Integer, Claim> claims(Server server) {
+        Map<Integer, Claim> out = new TreeMap<>();
+        server.claims().forEachClaim(c -> out.put(c.id(), c));
+        return out;
+    }
+}